@@ -0,0 +1,157 @@
+package com.onelogin.mfa
+
+import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.RefreshFactorsSuccess
+import com.onelogin.mfa.model.RegisterFactorError
+import com.onelogin.mfa.model.RegisterFactorSuccess
+import com.onelogin.mfa.model.ServiceState
+import kotlinx.coroutines.*
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+
+/**
+ * Client handed out while [OneLoginMfa.initializeAsync] is still building the real client in the
+ * background. Calls made before the real client is ready wait for it, calls made afterwards are
+ * forwarded directly.
+ */
+internal class DeferredMfaClient(private val deferredClient: Deferred<MfaClient>) : MfaClient {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+
+    @Volatile
+    private var client: MfaClient? = null
+
+    override fun registerFactor(
+        code: String,
+        registerFactorCallback: MfaCallback<RegisterFactorSuccess, RegisterFactorError>
+    ) {
+        withClient(
+            { it.registerFactor(code, registerFactorCallback) },
+            { registerFactorCallback.onError(RegisterFactorError("Failed to initialize client", it)) }
+        )
+    }
+
+    override fun registerFactorByWebLogin(
+        subdomain: String,
+        username: String,
+        password: String,
+        registerFactorByWebLogin: MfaCallback<RegisterFactorSuccess, RegisterFactorError>
+    ) {
+        withClient(
+            { it.registerFactorByWebLogin(subdomain, username, password, registerFactorByWebLogin) },
+            { registerFactorByWebLogin.onError(RegisterFactorError("Failed to initialize client", it)) }
+        )
+    }
+
+    override fun getFactors(getFactorsCallback: MfaCallback<List<Factor>, Exception>) {
+        withClient({ it.getFactors(getFactorsCallback) }, { getFactorsCallback.onError(Exception(it)) })
+    }
+
+    override fun getFactorById(id: Long, getFactorByIdCallback: MfaCallback<Factor?, Exception>) {
+        withClient({ it.getFactorById(id, getFactorByIdCallback) }, { getFactorByIdCallback.onError(Exception(it)) })
+    }
+
+    override fun getFactorByCredentialId(
+        credentialId: String,
+        getFactorByCredentialIdCallback: MfaCallback<Factor?, Exception>
+    ) {
+        withClient(
+            { it.getFactorByCredentialId(credentialId, getFactorByCredentialIdCallback) },
+            { getFactorByCredentialIdCallback.onError(Exception(it)) }
+        )
+    }
+
+    override fun observeFactors(): Flow<List<Factor>> =
+        flow { emitAll(await().observeFactors()) }
+
+    override fun observeFactorById(id: Long): Flow<Factor?> =
+        flow { emitAll(await().observeFactorById(id)) }
+
+    override fun observeFactorByCredentialId(credentialId: String): Flow<Factor?> =
+        flow { emitAll(await().observeFactorByCredentialId(credentialId)) }
+
+    override fun observeFactors(observeFactorsCallback: MfaCallback<List<Factor>, Exception>): MfaSubscription =
+        observeFactors().subscribe(scope, observeFactorsCallback)
+
+    override fun observeFactorById(
+        id: Long,
+        observeFactorByIdCallback: MfaCallback<Factor?, Exception>
+    ): MfaSubscription =
+        observeFactorById(id).subscribe(scope, observeFactorByIdCallback)
+
+    override fun observeFactorByCredentialId(
+        credentialId: String,
+        observeFactorByCredentialIdCallback: MfaCallback<Factor?, Exception>
+    ): MfaSubscription =
+        observeFactorByCredentialId(credentialId).subscribe(scope, observeFactorByCredentialIdCallback)
+
+    override fun removeFactor(factor: Factor, removeFactorCallback: MfaCallback<Int, Exception>) {
+        withClient({ it.removeFactor(factor, removeFactorCallback) }, { removeFactorCallback.onError(Exception(it)) })
+    }
+
+    override fun removeAllFactors(removeAllFactorsCallback: MfaCallback<Int, Exception>) {
+        withClient({ it.removeAllFactors(removeAllFactorsCallback) }, { removeAllFactorsCallback.onError(Exception(it)) })
+    }
+
+    override fun removeFactorById(id: Long, removeFactorByIdCallback: MfaCallback<Int, Exception>) {
+        withClient(
+            { it.removeFactorById(id, removeFactorByIdCallback) },
+            { removeFactorByIdCallback.onError(Exception(it)) }
+        )
+    }
+
+    override fun removeFactorByCredentialId(
+        credentialId: String,
+        removeFactorByCredentialIdCallback: MfaCallback<Int, Exception>
+    ) {
+        withClient(
+            { it.removeFactorByCredentialId(credentialId, removeFactorByCredentialIdCallback) },
+            { removeFactorByCredentialIdCallback.onError(Exception(it)) }
+        )
+    }
+
+    override fun refreshFactors(refreshFactorsCallback: MfaCallback<RefreshFactorsSuccess, Exception>) {
+        withClient({ it.refreshFactors(refreshFactorsCallback) }, { refreshFactorsCallback.onError(Exception(it)) })
+    }
+
+    override fun getServiceStates(): Map<String, ServiceState> =
+        client?.getServiceStates() ?: emptyMap()
+
+    override fun observeServiceStates(): Flow<Map<String, ServiceState>> =
+        flow { emitAll(await().observeServiceStates()) }
+
+    override fun observeServiceStates(
+        observeServiceStatesCallback: MfaCallback<Map<String, ServiceState>, Exception>
+    ): MfaSubscription = observeServiceStates().subscribe(scope, observeServiceStatesCallback)
+
+    override fun cancel() {
+        scope.coroutineContext.cancelChildren()
+        client?.cancel()
+    }
+
+    /**
+     * Wait for the real client to be built.
+     */
+    suspend fun await(): MfaClient = client ?: deferredClient.await().also { client = it }
+
+    private fun withClient(onReady: (MfaClient) -> Unit, onError: (Throwable) -> Unit) {
+        val readyClient = client
+        if (readyClient != null) {
+            onReady(readyClient)
+            return
+        }
+
+        scope.launch {
+            runCatching {
+                await()
+            }.fold(onReady) {
+                // A cancelled call, see [cancel], does not report an error
+                if (it is CancellationException) {
+                    throw it
+                }
+                onError(it)
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.onelogin.mfa.model.Factor
 import com.onelogin.mfa.model.RefreshFactorsSuccess
 import com.onelogin.mfa.model.RegisterFactorError
 import com.onelogin.mfa.model.RegisterFactorSuccess
+import com.onelogin.mfa.model.ServiceState
+import kotlinx.coroutines.flow.Flow
 
 /**
  * Provides methods that involve register, deleting, and refreshing factors.
@@ -63,6 +65,55 @@ interface MfaClient {
      */
     fun getFactorByCredentialId(credentialId: String, getFactorByCredentialIdCallback: MfaCallback <Factor?, Exception>)
 
+    /**
+     * Observe all factors registered within this client. The current list is emitted on collection
+     * and again every time factors are added, updated or removed, whether through this client or
+     * not. Consecutive identical lists are not emitted.
+     */
+    fun observeFactors(): Flow<List<Factor>>
+
+    /**
+     * Observe a factor registered within this client by using the auto-generated Room database ID.
+     * Emits null if the factor does not exist or has been removed.
+     */
+    fun observeFactorById(id: Long): Flow<Factor?>
+
+    /**
+     * Observe a OneLogin factor registered within this client by using the credential ID.
+     * Emits null if the factor does not exist or has been removed.
+     */
+    fun observeFactorByCredentialId(credentialId: String): Flow<Factor?>
+
+    /**
+     * Listener version of {@link #observeFactors()}, updates are delivered on the main thread until
+     * the returned {@link MfaSubscription} is unsubscribed or the client is cancelled.
+     *
+     * @param observeFactorsCallback Callback receiving every new list of factors, or the error that
+     * stopped the updates
+     */
+    fun observeFactors(observeFactorsCallback: MfaCallback<List<Factor>, Exception>): MfaSubscription
+
+    /**
+     * Listener version of {@link #observeFactorById(long)}, updates are delivered on the main thread
+     * until the returned {@link MfaSubscription} is unsubscribed or the client is cancelled.
+     *
+     * @param observeFactorByIdCallback Callback receiving the factor every time it changes, or null
+     * once it does not exist
+     */
+    fun observeFactorById(id: Long, observeFactorByIdCallback: MfaCallback<Factor?, Exception>): MfaSubscription
+
+    /**
+     * Listener version of {@link #observeFactorByCredentialId(String)}, updates are delivered on the
+     * main thread until the returned {@link MfaSubscription} is unsubscribed or the client is cancelled.
+     *
+     * @param observeFactorByCredentialIdCallback Callback receiving the factor every time it changes,
+     * or null once it does not exist
+     */
+    fun observeFactorByCredentialId(
+        credentialId: String,
+        observeFactorByCredentialIdCallback: MfaCallback<Factor?, Exception>
+    ): MfaSubscription
+
     /**
      * Delete a factor that was registered within this client from the Room database.
      *
@@ -112,6 +163,25 @@ interface MfaClient {
      */
     fun refreshFactors(refreshFactorsCallback: MfaCallback<RefreshFactorsSuccess, Exception>)
 
+    /**
+     * Health of the OneLogin API hosts called so far, keyed by host. Calls to a host that is
+     * {@link ServiceState#UNAVAILABLE} fail right away, which apps can use to show a degraded mode
+     * instead of waiting on requests.
+     */
+    fun getServiceStates(): Map<String, ServiceState>
+
+    /**
+     * Observe the value of {@link #getServiceStates()}, the current value is emitted on collection
+     * and again on every change.
+     */
+    fun observeServiceStates(): Flow<Map<String, ServiceState>>
+
+    /**
+     * Listener version of {@link #observeServiceStates()}, updates are delivered on the main thread
+     * until the returned {@link MfaSubscription} is unsubscribed or the client is cancelled.
+     */
+    fun observeServiceStates(observeServiceStatesCallback: MfaCallback<Map<String, ServiceState>, Exception>): MfaSubscription
+
     /**
      * Cancels all the pending operations related to this client, use this to avoid leaks of the callbacks
      * and to free resources in case the result of an operation is no longer required.
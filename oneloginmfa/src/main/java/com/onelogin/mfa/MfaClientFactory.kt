@@ -3,26 +3,57 @@ package com.onelogin.mfa
 import android.content.Context
 import androidx.room.Room
 import com.onelogin.mfa.data.db.MfaDatabase
+import com.onelogin.mfa.data.device.CachingDeviceManager
 import com.onelogin.mfa.data.device.DeviceManagerImpl
 import com.onelogin.mfa.data.factor.FactorManagerImpl
+import com.onelogin.mfa.data.factor.FactorRefresher
+import com.onelogin.mfa.data.encryption.DecryptedSeedCache
 import com.onelogin.mfa.data.encryption.EncryptionManagerImpl
+import com.onelogin.mfa.data.encryption.EncryptionMigrator
+import com.onelogin.mfa.data.metrics.SdkTrace
 import com.onelogin.mfa.data.network.NetworkProvider
+import com.onelogin.mfa.data.repository.CachedMfaRepository
 import com.onelogin.mfa.data.repository.MfaRepositoryImpl
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.launch
 
 internal class MfaClientFactory(
-    private val context: Context
+    private val context: Context,
+    private val scope: CoroutineScope = OneLoginMfa.backgroundScope
 ) {
 
-    fun build(): MfaClient {
+    fun build(): MfaClient = SdkTrace.section("MfaClientFactory.build") {
+        val configuration = OneLoginMfa.configuration
         val oneLoginApiService = NetworkProvider.getOneLoginApi(context)
         val subdomainApiService = NetworkProvider.getSubdomainApi(context)
-        val database = Room.databaseBuilder(context, MfaDatabase::class.java, "onelogin-mfa").build()
-        val repository = MfaRepositoryImpl(database.factorDao())
+        val database = Room.databaseBuilder(context, MfaDatabase::class.java, "onelogin-mfa")
+            .addMigrations(MfaDatabase.MIGRATION_1_2)
+            .build()
+        val repository = CachedMfaRepository(MfaRepositoryImpl(database))
 
         val encryptionManager = EncryptionManagerImpl(context)
-        val deviceManager = DeviceManagerImpl(context, oneLoginApiService)
-        val factorManager = FactorManagerImpl(repository, encryptionManager, deviceManager, subdomainApiService)
+        scope.launch {
+            EncryptionMigrator(repository, encryptionManager).migrate()
+        }
+        val deviceManager = CachingDeviceManager(
+            DeviceManagerImpl(context, oneLoginApiService),
+            database.deviceSettingsDao(),
+            configuration?.deviceSettingsFreshness ?: CachingDeviceManager.DEFAULT_FRESHNESS_MILLIS,
+            configuration?.revalidateDeviceSettings ?: false,
+            configuration?.deviceSettingsMaxStaleness ?: CachingDeviceManager.DEFAULT_MAX_STALENESS_MILLIS
+        )
+        val seedCache = DecryptedSeedCache(
+            configuration?.decryptedSeedCacheTtl ?: DecryptedSeedCache.DEFAULT_TTL_MILLIS
+        )
+        seedCache.evictOnBackgroundOrLock(context)
+        val factorManager = FactorManagerImpl(repository, encryptionManager, deviceManager, subdomainApiService, seedCache)
 
-        return MfaClientImpl(deviceManager, factorManager)
+        val factorRefresher = FactorRefresher(
+            factorManager,
+            deviceManager,
+            configuration?.refreshConcurrency ?: FactorRefresher.DEFAULT_MAX_CONCURRENCY
+        )
+
+        MfaClientImpl(deviceManager, factorManager, factorRefresher)
     }
 }
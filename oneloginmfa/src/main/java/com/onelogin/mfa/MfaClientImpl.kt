@@ -1,18 +1,26 @@
 package com.onelogin.mfa
 
 import com.onelogin.mfa.data.device.DeviceManager
+import com.onelogin.mfa.data.log.SdkLog
 import com.onelogin.mfa.model.Factor
 import com.onelogin.mfa.data.factor.FactorManager
+import com.onelogin.mfa.data.factor.FactorRefresher
+import com.onelogin.mfa.data.network.NetworkProvider
+import com.onelogin.mfa.model.MfaLogCategory
 import com.onelogin.mfa.model.RefreshFactorsSuccess
 import com.onelogin.mfa.model.RegisterFactorError
 import com.onelogin.mfa.model.RegisterFactorSuccess
+import com.onelogin.mfa.model.ServiceState
 import kotlinx.coroutines.*
-import timber.log.Timber
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.StateFlow
 import kotlin.Exception
 
 internal class MfaClientImpl(
     private val deviceManager: DeviceManager,
-    private val factorManager: FactorManager
+    private val factorManager: FactorManager,
+    private val factorRefresher: FactorRefresher = FactorRefresher(factorManager, deviceManager),
+    private val serviceStates: StateFlow<Map<String, ServiceState>> = NetworkProvider.oneLoginCircuitBreakers.states
 ) : MfaClient {
 
     private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
@@ -26,11 +34,11 @@ internal class MfaClientImpl(
                 factorManager.registerFactor(code)
             }.fold(
                 {
-                    Timber.d("Successfully added factor: $it")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Successfully added factor $it" }
                     registerFactorCallback.onSuccess(RegisterFactorSuccess(it))
                 },
                 {
-                    Timber.e("Failed to add factor")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to add factor" }
                     registerFactorCallback.onError(RegisterFactorError("Failed to add factor", it))
                 }
             )
@@ -48,11 +56,11 @@ internal class MfaClientImpl(
                 factorManager.registerFactorByWebLogin(subdomain, username, password)
             }.fold(
                 {
-                    Timber.d("Successfully added factor via web login: $it")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Successfully added factor $it via web login" }
                     registerFactorByWebLogin.onSuccess(RegisterFactorSuccess(it))
                 },
                 {
-                    Timber.e(it, "Failed to add factor via web login")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to add factor via web login" }
                     registerFactorByWebLogin.onError(RegisterFactorError("Failed to add factor via web login", it))
                 }
             )
@@ -65,11 +73,11 @@ internal class MfaClientImpl(
                 factorManager.getFactors()
             }.fold(
                 {
-                    Timber.d("Retrieved all factors: $it")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Retrieved ${SdkLog.describe(it)}" }
                     getFactorsCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it,"Failed to retrieve all factors")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to retrieve all factors" }
                     getFactorsCallback.onError(Exception(it))
                 }
             )
@@ -82,11 +90,11 @@ internal class MfaClientImpl(
                 factorManager.getFactorById(id)
             }.fold(
                 {
-                    Timber.d("Get factor by ID: $it")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Get factor by ID: ${SdkLog.describe(it)}" }
                     getFactorByIdCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it,"Failed to retrieve factor by ID")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to retrieve factor by ID: $id" }
                     getFactorByIdCallback.onError(Exception(it))
                 }
             )
@@ -102,28 +110,58 @@ internal class MfaClientImpl(
                 factorManager.getFactorByCredentialId(credentialId)
             }.fold(
                 {
-                    Timber.d("Get factor by credential ID: $it")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Get factor by credential ID: ${SdkLog.describe(it)}" }
                     getFactorByCredentialIdCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it, "Failed to retrieve factor by credential ID: $credentialId")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to retrieve factor by credential ID: $credentialId" }
                     getFactorByCredentialIdCallback.onError(Exception(it))
                 }
             )
         }
     }
 
+    override fun observeFactors(): Flow<List<Factor>> =
+        factorManager.observeFactors()
+
+    override fun observeFactorById(id: Long): Flow<Factor?> =
+        factorManager.observeFactorById(id)
+
+    override fun observeFactorByCredentialId(credentialId: String): Flow<Factor?> =
+        factorManager.observeFactorByCredentialId(credentialId)
+
+    override fun observeFactors(observeFactorsCallback: MfaCallback<List<Factor>, Exception>): MfaSubscription =
+        factorManager.observeFactors().subscribe(scope, observeFactorsCallback) {
+            SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to observe factors" }
+        }
+
+    override fun observeFactorById(
+        id: Long,
+        observeFactorByIdCallback: MfaCallback<Factor?, Exception>
+    ): MfaSubscription =
+        factorManager.observeFactorById(id).subscribe(scope, observeFactorByIdCallback) {
+            SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to observe factor by ID: $id" }
+        }
+
+    override fun observeFactorByCredentialId(
+        credentialId: String,
+        observeFactorByCredentialIdCallback: MfaCallback<Factor?, Exception>
+    ): MfaSubscription =
+        factorManager.observeFactorByCredentialId(credentialId).subscribe(scope, observeFactorByCredentialIdCallback) {
+            SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to observe factor by credential ID: $credentialId" }
+        }
+
     override fun removeFactor(factor: Factor, removeFactorCallback: MfaCallback<Int, Exception>) {
         scope.launch {
             runCatching {
                 factorManager.removeFactor(factor)
             }.fold(
                 {
-                    Timber.d("Delete factor: $factor")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Delete ${SdkLog.describe(factor)}" }
                     removeFactorCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it, "Failed to delete factor: $factor")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to delete ${SdkLog.describe(factor)}" }
                     removeFactorCallback.onError(Exception(it))
                 }
             )
@@ -136,11 +174,11 @@ internal class MfaClientImpl(
                 factorManager.removeAllFactors()
             }.fold(
                 {
-                    Timber.d("Delete all factors!")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Delete all factors!" }
                     removeAllFactorsCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it, "Failed to delete all factors!")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to delete all factors!" }
                     removeAllFactorsCallback.onError(Exception(it))
                 }
             )
@@ -153,11 +191,11 @@ internal class MfaClientImpl(
                 factorManager.removeFactorById(id)
             }.fold(
                 {
-                    Timber.d("Delete factor by ID: $id")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Delete factor by ID: $id" }
                     removeFactorByIdCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it, "Failed to delete factor by ID: $id")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to delete factor by ID: $id" }
                     removeFactorByIdCallback.onError(Exception(it))
                 }
             )
@@ -173,11 +211,11 @@ internal class MfaClientImpl(
                 factorManager.removeFactorByCredentialId(credentialId)
             }.fold(
                 {
-                    Timber.d("Delete factor by credential credential ID: $credentialId")
+                    SdkLog.d(MfaLogCategory.CLIENT) { "Delete factor by credential ID: $credentialId" }
                     removeFactorByCredentialIdCallback.onSuccess(it)
                 },
                 {
-                    Timber.e(it, "Failed to delete factor by credential ID: $credentialId")
+                    SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to delete factor by credential ID: $credentialId" }
                     removeFactorByCredentialIdCallback.onError(Exception(it))
                 }
             )
@@ -185,48 +223,30 @@ internal class MfaClientImpl(
     }
 
     override fun refreshFactors(refreshFactorsCallback: MfaCallback<RefreshFactorsSuccess, Exception>) {
-        val results = RefreshFactorsSuccess()
         scope.launch {
             kotlin.runCatching {
-                factorManager.getFactorsByIssuer("OneLogin").map { factor ->
-                    deviceManager.checkDeviceSettings(factor).let { settingsResponse ->
-
-                        if (!settingsResponse.isSuccess || settingsResponse.unpaired) {
-                            factor.paired = false
-                            results.unpairedCount++
-                            results.unpairedFactors.add(factor)
-                            factorManager.removeFactor(factor)
-                        }
-
-                        val settings = settingsResponse.settings
-
-                        // Only update settings if factor is still paired
-                        if (factor.paired && (settings.disallowJailbrokenOrRooted == factor.allowRoot ||
-                                    settings.forceLockProtection != factor.forceLock ||
-                                    settings.biometricVerification != factor.requireBiometrics)
-                        ) {
-                            factor.allowRoot = settings.disallowJailbrokenOrRooted == false
-                            factor.forceLock = settings.forceLockProtection == true
-                            factor.requireBiometrics = settings.biometricVerification
-                            results.updatedCount++
-                            results.updatedFactors.add(factor)
-                            factorManager.updateFactor(factor)
-                        }
-                    }
-                }
+                factorRefresher.refresh()
             }.fold(
                     {
-                        Timber.d("Successfully refreshed factors")
-                        refreshFactorsCallback.onSuccess(results)
+                        SdkLog.d(MfaLogCategory.CLIENT) { "Successfully refreshed factors" }
+                        refreshFactorsCallback.onSuccess(it)
                     },
                     {
-                        Timber.e(it, "Failed to refresh factors")
+                        SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to refresh factors" }
                         refreshFactorsCallback.onError(Exception(it))
                     }
             )
         }
     }
 
+    override fun getServiceStates(): Map<String, ServiceState> = serviceStates.value
+
+    override fun observeServiceStates(): Flow<Map<String, ServiceState>> = serviceStates
+
+    override fun observeServiceStates(
+        observeServiceStatesCallback: MfaCallback<Map<String, ServiceState>, Exception>
+    ): MfaSubscription = serviceStates.subscribe(scope, observeServiceStatesCallback)
+
     override fun cancel() {
         scope.coroutineContext.cancelChildren()
     }
@@ -1,17 +1,167 @@
 package com.onelogin.mfa
 
-class MfaConfiguration private constructor(internal val debug: Boolean) {
+import com.onelogin.mfa.data.device.CachingDeviceManager
+import com.onelogin.mfa.data.device.DeviceIntegrityMonitor
+import com.onelogin.mfa.data.encryption.DecryptedSeedCache
+import com.onelogin.mfa.data.factor.FactorRefresher
+import com.onelogin.mfa.model.MfaLogCategory
+
+class MfaConfiguration private constructor(
+    internal val debug: Boolean,
+    internal val deviceIntegrityCheckInterval: Long,
+    internal val decryptedSeedCacheTtl: Long,
+    internal val refreshConcurrency: Int,
+    internal val deviceSettingsFreshness: Long,
+    internal val revalidateDeviceSettings: Boolean,
+    internal val deviceSettingsMaxStaleness: Long,
+    internal val collectMetrics: Boolean,
+    internal val metricsListener: MfaMetricsListener?,
+    internal val tracing: Boolean,
+    internal val logLevel: Int?,
+    internal val logLevels: Map<MfaLogCategory, Int>
+) {
 
     class Builder {
         private var debug: Boolean = false
+        private var deviceIntegrityCheckInterval: Long = DeviceIntegrityMonitor.DEFAULT_TTL_MILLIS
+        private var decryptedSeedCacheTtl: Long = DecryptedSeedCache.DEFAULT_TTL_MILLIS
+        private var refreshConcurrency: Int = FactorRefresher.DEFAULT_MAX_CONCURRENCY
+        private var deviceSettingsFreshness: Long = CachingDeviceManager.DEFAULT_FRESHNESS_MILLIS
+        private var revalidateDeviceSettings: Boolean = false
+        private var deviceSettingsMaxStaleness: Long = CachingDeviceManager.DEFAULT_MAX_STALENESS_MILLIS
+        private var collectMetrics: Boolean = false
+        private var metricsListener: MfaMetricsListener? = null
+        private var tracing: Boolean = false
+        private var logLevel: Int? = null
+        private val logLevels = HashMap<MfaLogCategory, Int>()
 
         fun isDebug(debug: Boolean): Builder {
             this.debug = debug
             return this
         }
 
+        /**
+         * Maximum age in milliseconds of the cached root and keyguard checks used by the OTP views.
+         * The checks are also re-evaluated whenever the device is unlocked or the app returns to
+         * the foreground. Defaults to 5 minutes.
+         */
+        fun deviceIntegrityCheckInterval(intervalMillis: Long): Builder {
+            this.deviceIntegrityCheckInterval = intervalMillis
+            return this
+        }
+
+        /**
+         * Time in milliseconds decrypted seeds are kept in memory, so loading the same factors again
+         * does not require a decryption. Cached seeds are also cleared whenever the screen turns off
+         * or the app goes to the background. Use 0 to disable the cache. Defaults to 5 minutes.
+         */
+        fun decryptedSeedCacheTtl(ttlMillis: Long): Builder {
+            this.decryptedSeedCacheTtl = ttlMillis
+            return this
+        }
+
+        /**
+         * Maximum number of device settings requests running at the same time when refreshing
+         * factors. Defaults to 5.
+         */
+        fun refreshConcurrency(maxConcurrency: Int): Builder {
+            this.refreshConcurrency = maxConcurrency
+            return this
+        }
+
+        /**
+         * Time in milliseconds the device settings received for a factor are considered up to date.
+         * Refreshing factors within this time does not check their settings with OneLogin again, so a
+         * factor unpaired or a setting changed on OneLogin in the meantime is only applied once this
+         * time has passed, unless {@link #revalidateDeviceSettings(boolean)} is enabled. Defaults to
+         * 0, always check.
+         */
+        fun deviceSettingsFreshness(freshnessMillis: Long): Builder {
+            this.deviceSettingsFreshness = freshnessMillis
+            return this
+        }
+
+        /**
+         * Whether refreshing factors within {@link #deviceSettingsFreshness(long)} still checks their
+         * settings with OneLogin in the background, so the next refresh applies any change without
+         * waiting for the network. Defaults to false.
+         */
+        fun revalidateDeviceSettings(revalidate: Boolean): Builder {
+            this.revalidateDeviceSettings = revalidate
+            return this
+        }
+
+        /**
+         * Maximum age in milliseconds of the device settings still enforced when refreshing factors
+         * while the network is unavailable. Older settings are not used and the refresh fails. Only
+         * applies when {@link #deviceSettingsFreshness(long)} is set. Defaults to 24 hours.
+         */
+        fun deviceSettingsMaxStaleness(maxStalenessMillis: Long): Builder {
+            this.deviceSettingsMaxStaleness = maxStalenessMillis
+            return this
+        }
+
+        /**
+         * Whether the SDK measures its operations, see {@link OneLoginMfa#getMetrics()}. Implied by
+         * {@link #metricsListener(MfaMetricsListener)}. Defaults to false.
+         */
+        fun collectMetrics(collect: Boolean): Builder {
+            this.collectMetrics = collect
+            return this
+        }
+
+        /**
+         * Listener notified of the duration and outcome of every operation measured by the SDK.
+         * Setting a listener enables {@link #collectMetrics(boolean)}.
+         */
+        fun metricsListener(listener: MfaMetricsListener?): Builder {
+            this.metricsListener = listener
+            return this
+        }
+
+        /**
+         * Whether the SDK emits named trace sections around its hot paths, shown by systrace and
+         * Perfetto, including async sections for the work running in coroutines. Defaults to false,
+         * disabled sections have no measurable cost.
+         */
+        fun enableTracing(enabled: Boolean): Builder {
+            this.tracing = enabled
+            return this
+        }
+
+        /**
+         * Minimum priority of the SDK logs, as in {@link android.util.Log}, e.g. {@code Log.INFO}.
+         * Statements below it are skipped without building their message. Defaults to
+         * {@code Log.DEBUG} with {@link #isDebug(boolean)} and {@code Log.WARN} otherwise.
+         */
+        fun logLevel(level: Int): Builder {
+            this.logLevel = level
+            return this
+        }
+
+        /**
+         * Minimum priority of the SDK logs of [category], overriding {@link #logLevel(int)}.
+         */
+        fun logLevel(category: MfaLogCategory, level: Int): Builder {
+            this.logLevels[category] = level
+            return this
+        }
+
         fun build(): MfaConfiguration {
-            return MfaConfiguration(debug)
+            return MfaConfiguration(
+                debug,
+                deviceIntegrityCheckInterval,
+                decryptedSeedCacheTtl,
+                refreshConcurrency,
+                deviceSettingsFreshness,
+                revalidateDeviceSettings,
+                deviceSettingsMaxStaleness,
+                collectMetrics,
+                metricsListener,
+                tracing,
+                logLevel,
+                HashMap(logLevels)
+            )
         }
     }
 }
@@ -0,0 +1,14 @@
+package com.onelogin.mfa
+
+import com.onelogin.mfa.model.MfaOperation
+
+/**
+ * Receives the duration and outcome of every operation measured by the SDK, e.g. to export them to
+ * an app's own telemetry. Registered with {@link MfaConfiguration.Builder#metricsListener}.
+ *
+ * Called synchronously on the thread which ran the operation, including the main thread and OkHttp
+ * threads, so implementations must be thread safe and return quickly.
+ */
+interface MfaMetricsListener {
+    fun onOperation(operation: MfaOperation, durationNanos: Long, success: Boolean)
+}
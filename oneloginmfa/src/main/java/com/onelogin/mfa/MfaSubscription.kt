@@ -0,0 +1,42 @@
+package com.onelogin.mfa
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.launch
+
+/**
+ * Handle of a listener registered with one of the observe methods of [MfaClient].
+ */
+interface MfaSubscription {
+
+    /**
+     * Stop delivering updates to the listener. Calling this more than once has no effect.
+     */
+    fun unsubscribe()
+}
+
+/**
+ * Collect this flow in [scope], delivering values and the error that ends the flow to [callback].
+ */
+internal fun <T> Flow<T>.subscribe(
+    scope: CoroutineScope,
+    callback: MfaCallback<T, Exception>,
+    onError: (Throwable) -> Unit = {}
+): MfaSubscription {
+    val job = scope.launch {
+        catch {
+            onError(it)
+            callback.onError(Exception(it))
+        }.collect {
+            callback.onSuccess(it)
+        }
+    }
+
+    return object : MfaSubscription {
+        override fun unsubscribe() {
+            job.cancel()
+        }
+    }
+}
@@ -1,23 +1,161 @@
 package com.onelogin.mfa
 
 import android.content.Context
+import android.util.Log
+import com.onelogin.mfa.data.device.DeviceIntegrityImpl
+import com.onelogin.mfa.data.device.DeviceIntegrityMonitor
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.data.metrics.SdkTrace
+import com.onelogin.mfa.model.MfaLogCategory
+import com.onelogin.mfa.model.OperationStats
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.launch
 import timber.log.Timber
 
 object OneLoginMfa {
 
+    @Volatile
     private var client: MfaClient? = null
 
+    internal var configuration: MfaConfiguration? = null
+        private set
+
+    /**
+     * Owns the SDK's own background work, like building the client and maintenance tasks, which
+     * is not tied to any client call.
+     */
+    internal val backgroundScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    @Volatile
+    private var deviceIntegrityMonitor: DeviceIntegrityMonitor? = null
+
+    /**
+     * Shared by every component, so the OTP views and tokens are measured too.
+     */
+    internal val metrics = MetricsRecorder()
+
     @JvmStatic
     fun initialize(context: Context, configuration: MfaConfiguration) {
-        if (configuration.debug) {
-            Timber.plant(Timber.DebugTree())
-        }
+        applyConfiguration(configuration)
+        warmDeviceIntegrityMonitor(context)
         client = MfaClientFactory(context).build()
-        Timber.d("Initialize OneLogin MFA client")
+        SdkLog.d(MfaLogCategory.CLIENT) { "Initialize OneLogin MFA client" }
+    }
+
+    /**
+     * Same as [initialize] but builds the client on a background thread, so the database, network
+     * and keystore setup do not block the caller. [getClient] can be used right away: operations
+     * requested before the client is ready wait for it. Use [awaitClient] or [callback] to know when
+     * the client is ready.
+     *
+     * @param callback Optional callback invoked on the main thread once the client is ready, or
+     * with the error that prevented it from being built
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun initializeAsync(
+        context: Context,
+        configuration: MfaConfiguration,
+        callback: MfaCallback<MfaClient, Exception>? = null
+    ) {
+        applyConfiguration(configuration)
+        warmDeviceIntegrityMonitor(context)
+
+        val appContext = context.applicationContext ?: context
+        val deferredClient = DeferredMfaClient(backgroundScope.async {
+            MfaClientFactory(appContext).build()
+        })
+        client = deferredClient
+        SdkLog.d(MfaLogCategory.CLIENT) { "Initialize OneLogin MFA client asynchronously" }
+
+        if (callback != null) {
+            backgroundScope.launch(Dispatchers.Main) {
+                runCatching {
+                    deferredClient.await()
+                }.fold(
+                    { callback.onSuccess(it) },
+                    {
+                        if (it is CancellationException) {
+                            throw it
+                        }
+                        SdkLog.e(MfaLogCategory.CLIENT, it) { "Failed to initialize OneLogin MFA client" }
+                        callback.onError(Exception(it))
+                    }
+                )
+            }
+        }
+    }
+
+    /**
+     * Suspend until the client is ready. Returns immediately if the client was initialized with
+     * [initialize] or the asynchronous initialization already completed.
+     */
+    @JvmStatic
+    suspend fun awaitClient(): MfaClient {
+        val currentClient = getClient()
+        return if (currentClient is DeferredMfaClient) currentClient.await() else currentClient
+    }
+
+    /**
+     * Counters and latency histogram of every operation measured since the client was initialized
+     * or [resetMetrics] was called. Only filled when metrics are enabled in [MfaConfiguration].
+     */
+    @JvmStatic
+    fun getMetrics(): List<OperationStats> = metrics.getStats()
+
+    @JvmStatic
+    fun resetMetrics() {
+        metrics.reset()
     }
 
     @JvmStatic
     fun getClient(): MfaClient = requireNotNull(client) {
         "You should call OneLoginMfa.initialize() before accessing the client"
     }
+
+    private fun applyConfiguration(configuration: MfaConfiguration) {
+        if (configuration.debug) {
+            Timber.plant(Timber.DebugTree())
+        }
+        this.configuration = configuration
+        metrics.configure(configuration.collectMetrics, configuration.metricsListener)
+        SdkTrace.isEnabled = configuration.tracing
+        SdkLog.configure(
+            configuration.logLevel ?: if (configuration.debug) Log.DEBUG else Log.WARN,
+            configuration.logLevels
+        )
+    }
+
+    /**
+     * Create the device integrity monitor off the calling thread, so its first evaluation has
+     * usually landed by the time an OTP view is shown.
+     */
+    private fun warmDeviceIntegrityMonitor(context: Context) {
+        val appContext = context.applicationContext ?: context
+        backgroundScope.launch {
+            getDeviceIntegrityMonitor(appContext)
+        }
+    }
+
+    /**
+     * Shared cache of the root and keyguard checks used by the OTP views, created when the SDK is
+     * initialized or on first use. It only needs a context, so the views work whether or not the
+     * client has been initialized.
+     */
+    internal fun getDeviceIntegrityMonitor(context: Context): DeviceIntegrityMonitor =
+        deviceIntegrityMonitor ?: synchronized(this) {
+            deviceIntegrityMonitor ?: run {
+                val appContext = context.applicationContext ?: context
+                DeviceIntegrityMonitor(
+                    appContext,
+                    DeviceIntegrityImpl(appContext),
+                    configuration?.deviceIntegrityCheckInterval ?: DeviceIntegrityMonitor.DEFAULT_TTL_MILLIS
+                )
+            }.also { deviceIntegrityMonitor = it }
+        }
 }
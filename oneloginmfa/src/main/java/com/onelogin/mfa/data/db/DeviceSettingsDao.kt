@@ -0,0 +1,19 @@
+package com.onelogin.mfa.data.db
+
+import androidx.room.*
+
+@Dao
+internal interface DeviceSettingsDao {
+
+    @Query("SELECT * FROM DeviceSettingsEntity")
+    suspend fun getAllDeviceSettings(): List<DeviceSettingsEntity>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertDeviceSettings(deviceSettings: DeviceSettingsEntity)
+
+    @Query("DELETE FROM DeviceSettingsEntity WHERE credentialId = :credentialId")
+    suspend fun deleteDeviceSettings(credentialId: String): Int
+
+    @Query("DELETE FROM DeviceSettingsEntity")
+    suspend fun deleteAllDeviceSettings(): Int
+}
@@ -0,0 +1,41 @@
+package com.onelogin.mfa.data.db
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import com.onelogin.mfa.data.api.Settings
+
+/**
+ * Last device settings received from OneLogin for a factor, see
+ * [com.onelogin.mfa.data.device.CachingDeviceManager].
+ *
+ * @property checkedAt Wall clock time in milliseconds the settings were received at
+ */
+@Entity
+internal data class DeviceSettingsEntity(
+    @PrimaryKey val credentialId: String,
+    val disallowJailbrokenOrRooted: Boolean,
+    val forceLockProtection: Boolean,
+    val disableBackup: Boolean,
+    val biometricVerification: Boolean,
+    val checkedAt: Long
+) {
+
+    fun toSettings(): Settings = Settings(
+        disallowJailbrokenOrRooted = disallowJailbrokenOrRooted,
+        forceLockProtection = forceLockProtection,
+        disableBackup = disableBackup,
+        biometricVerification = biometricVerification
+    )
+
+    companion object {
+        fun fromSettings(credentialId: String, settings: Settings, checkedAt: Long): DeviceSettingsEntity =
+            DeviceSettingsEntity(
+                credentialId = credentialId,
+                disallowJailbrokenOrRooted = settings.disallowJailbrokenOrRooted,
+                forceLockProtection = settings.forceLockProtection,
+                disableBackup = settings.disableBackup,
+                biometricVerification = settings.biometricVerification,
+                checkedAt = checkedAt
+            )
+    }
+}
@@ -2,6 +2,7 @@ package com.onelogin.mfa.data.db
 
 import androidx.room.*
 import com.onelogin.mfa.model.Factor
+import kotlinx.coroutines.flow.Flow
 
 @Dao
 internal interface FactorDao {
@@ -21,9 +22,24 @@ internal interface FactorDao {
     @Query("SELECT * FROM FactorEntity ORDER BY orderPreference ASC, creationDate ASC")
     suspend fun getAllFactors(): List<Factor>
 
+    @Query("SELECT * FROM FactorEntity ORDER BY orderPreference ASC, creationDate ASC")
+    fun observeAllFactors(): Flow<List<Factor>>
+
+    @Query("SELECT * FROM FactorEntity WHERE id = :id LIMIT 1")
+    fun observeFactorById(id: Long): Flow<Factor?>
+
+    @Query("SELECT * FROM FactorEntity WHERE credentialId = :credentialId LIMIT 1")
+    fun observeFactorByCredentialId(credentialId: String): Flow<Factor?>
+
     @Update
     suspend fun updateFactor(factor: FactorEntity): Int
 
+    @Query("UPDATE FactorEntity SET seed = :seed WHERE id = :id")
+    suspend fun updateFactorSeed(id: Long, seed: String): Int
+
+    @Query("UPDATE FactorEntity SET allowRoot = :allowRoot, forceLock = :forceLock, requireBiometrics = :requireBiometrics WHERE id = :id")
+    suspend fun updateFactorSettings(id: Long, allowRoot: Boolean, forceLock: Boolean, requireBiometrics: Boolean): Int
+
     @Delete
     suspend fun deleteFactor(factor: FactorEntity): Int
 
@@ -35,4 +51,7 @@ internal interface FactorDao {
 
     @Query("DELETE FROM FactorEntity WHERE id = :id")
     suspend fun deleteFactorById(id: Long): Int
+
+    @Query("DELETE FROM FactorEntity WHERE id IN (:ids)")
+    suspend fun deleteFactorsByIds(ids: List<Long>): Int
 }
@@ -2,8 +2,28 @@ package com.onelogin.mfa.data.db
 
 import androidx.room.Database
 import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 
-@Database(entities = [FactorEntity::class], version = 1, exportSchema = false)
+@Database(entities = [FactorEntity::class, DeviceSettingsEntity::class], version = 2, exportSchema = false)
 internal abstract class MfaDatabase : RoomDatabase() {
     internal abstract fun factorDao(): FactorDao
+    internal abstract fun deviceSettingsDao(): DeviceSettingsDao
+
+    companion object {
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                database.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `DeviceSettingsEntity` (" +
+                        "`credentialId` TEXT NOT NULL, " +
+                        "`disallowJailbrokenOrRooted` INTEGER NOT NULL, " +
+                        "`forceLockProtection` INTEGER NOT NULL, " +
+                        "`disableBackup` INTEGER NOT NULL, " +
+                        "`biometricVerification` INTEGER NOT NULL, " +
+                        "`checkedAt` INTEGER NOT NULL, " +
+                        "PRIMARY KEY(`credentialId`))"
+                )
+            }
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package com.onelogin.mfa.data.device
+
+import com.onelogin.mfa.data.OneLoginMfaException
+import com.onelogin.mfa.data.api.SettingsResponse
+import com.onelogin.mfa.data.db.DeviceSettingsDao
+import com.onelogin.mfa.data.db.DeviceSettingsEntity
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.MfaLogCategory
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.io.IOException
+
+/**
+ * Keeps the device settings received for each factor, keyed by credential id and persisted in the
+ * database, so checking the settings of a factor again within [freshnessMillis] does not go to the
+ * network. With [revalidateInBackground] such a check still refreshes the cached settings in the
+ * background, and the next check returns them.
+ *
+ * Served from the cache, a change of the settings or the unpairing of a factor on OneLogin is only
+ * noticed once the settings are older than [freshnessMillis], which is why caching is opt-in and
+ * [DEFAULT_FRESHNESS_MILLIS] is 0. With a [freshnessMillis] of 0 every check goes to the network
+ * and nothing is persisted.
+ *
+ * When the settings are older than [freshnessMillis] and cannot be retrieved because of an I/O
+ * failure, the last settings received are returned as long as they are not older than
+ * [maxStalenessMillis], so refreshing factors keeps enforcing them offline instead of failing.
+ * The settings of removed factors are dropped, see [removeDeviceSettings].
+ */
+internal class CachingDeviceManager(
+    private val deviceManager: DeviceManager,
+    private val deviceSettingsDao: DeviceSettingsDao,
+    private val freshnessMillis: Long = DEFAULT_FRESHNESS_MILLIS,
+    private val revalidateInBackground: Boolean = false,
+    private val maxStalenessMillis: Long = DEFAULT_MAX_STALENESS_MILLIS,
+    private val getTime: () -> Long = { System.currentTimeMillis() },
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+) : DeviceManager by deviceManager {
+
+    private val mutex = Mutex()
+    private var cachedSettings: HashMap<String, DeviceSettingsEntity>? = null
+
+    override suspend fun checkDeviceSettings(factor: Factor): SettingsResponse {
+        val credentialId = factor.credentialId
+        if (credentialId.isNullOrEmpty() || freshnessMillis <= 0) {
+            return deviceManager.checkDeviceSettings(factor)
+        }
+
+        val cached = getCachedSettings(credentialId)
+        if (cached != null && isFresh(cached)) {
+            if (revalidateInBackground) {
+                scope.launch {
+                    runCatching { fetchSettings(factor, credentialId) }
+                        .onFailure { SdkLog.e(MfaLogCategory.DEVICE, it) { "Failed to revalidate device settings" } }
+                }
+            }
+            return SettingsResponse(isSuccess = true, unpaired = false, settings = cached.toSettings())
+        }
+
+        return try {
+            fetchSettings(factor, credentialId)
+        } catch (e: OneLoginMfaException) {
+            // An error answered by OneLogin is not ignored, and settings too old are not enforced
+            if (cached == null || e.cause !is IOException || !isUsableOffline(cached)) {
+                throw e
+            }
+            SdkLog.d(MfaLogCategory.DEVICE) { "Network unavailable, using device settings checked at ${cached.checkedAt}" }
+            SettingsResponse(isSuccess = true, unpaired = false, settings = cached.toSettings())
+        }
+    }
+
+    override suspend fun removeDeviceSettings(credentialIds: Collection<String>) {
+        mutex.withLock {
+            credentialIds.forEach {
+                cachedSettings?.remove(it)
+                deviceSettingsDao.deleteDeviceSettings(it)
+            }
+        }
+    }
+
+    override suspend fun removeAllDeviceSettings() {
+        mutex.withLock {
+            cachedSettings?.clear()
+            deviceSettingsDao.deleteAllDeviceSettings()
+        }
+    }
+
+    private suspend fun fetchSettings(factor: Factor, credentialId: String): SettingsResponse {
+        val settingsResponse = deviceManager.checkDeviceSettings(factor)
+
+        mutex.withLock {
+            val settings = loadSettings()
+            if (settingsResponse.isSuccess && !settingsResponse.unpaired) {
+                val entity = DeviceSettingsEntity.fromSettings(credentialId, settingsResponse.settings, getTime())
+                deviceSettingsDao.insertDeviceSettings(entity)
+                settings[credentialId] = entity
+            } else if (settings.remove(credentialId) != null) {
+                deviceSettingsDao.deleteDeviceSettings(credentialId)
+            }
+        }
+        return settingsResponse
+    }
+
+    private suspend fun getCachedSettings(credentialId: String): DeviceSettingsEntity? =
+        mutex.withLock { loadSettings()[credentialId] }
+
+    private suspend fun loadSettings(): HashMap<String, DeviceSettingsEntity> =
+        cachedSettings ?: deviceSettingsDao.getAllDeviceSettings()
+            .associateByTo(HashMap()) { it.credentialId }
+            .also { cachedSettings = it }
+
+    // A wall clock set back in time makes the settings look stale rather than fresh forever
+    private fun isFresh(settings: DeviceSettingsEntity): Boolean =
+        getTime() - settings.checkedAt in 0 until freshnessMillis
+
+    private fun isUsableOffline(settings: DeviceSettingsEntity): Boolean =
+        getTime() - settings.checkedAt in 0 until maxStalenessMillis
+
+    companion object {
+        const val DEFAULT_FRESHNESS_MILLIS = 0L
+        const val DEFAULT_MAX_STALENESS_MILLIS = 24 * 60 * 60 * 1000L
+    }
+}
@@ -0,0 +1,9 @@
+package com.onelogin.mfa.data.device
+
+/**
+ * Local checks on the state of the device, which require no network access.
+ */
+internal interface DeviceIntegrity {
+    fun isDeviceSecure(): Boolean
+    fun isDeviceRooted(): Boolean
+}
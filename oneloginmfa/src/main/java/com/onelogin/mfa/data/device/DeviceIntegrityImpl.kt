@@ -0,0 +1,44 @@
+package com.onelogin.mfa.data.device
+
+import android.app.KeyguardManager
+import android.content.Context
+import android.os.Build
+import com.onelogin.mfa.data.metrics.SdkTrace
+import java.io.BufferedReader
+import java.io.File
+import java.io.InputStreamReader
+
+internal class DeviceIntegrityImpl(private val context: Context) : DeviceIntegrity {
+
+    override fun isDeviceSecure(): Boolean {
+        val keyguardManager = context.getSystemService(Context.KEYGUARD_SERVICE) as KeyguardManager
+        return keyguardManager.isKeyguardSecure
+    }
+
+    override fun isDeviceRooted(): Boolean = SdkTrace.section("DeviceIntegrity.isDeviceRooted") { checkRooted() }
+
+    private fun checkRooted(): Boolean {
+        // There is no way to verify with 100% certainty whether or not a device is rooted
+        val buildTags = Build.TAGS
+        if (buildTags != null && buildTags.contains("test-keys"))
+            return true
+
+        // Check if Superuser.apk or any su binaries exist
+        val paths = arrayOf("/system/app/Superuser.apk", "/sbin/su", "/system/bin/su", "/system/xbin/su", "/data/local/xbin/su", "/data/local/bin/su", "/system/sd/xbin/su", "/system/bin/failsafe/su", "/data/local/su", "/su/bin/su")
+        for (path in paths) {
+            if (File(path).exists()) return true
+        }
+
+        // Attempt to run su
+        var process: Process? = null
+        return try {
+            process = Runtime.getRuntime().exec(arrayOf("/system/xbin/which", "su"))
+            val bufferedReader = BufferedReader(InputStreamReader(process!!.inputStream))
+            bufferedReader.readLine() != null
+        } catch (t: Throwable) {
+            false
+        } finally {
+            process?.destroy()
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.onelogin.mfa.data.device
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.data.util.AppForegroundTracker
+import com.onelogin.mfa.model.MfaLogCategory
+import kotlinx.coroutines.*
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Keeps the result of the root and keyguard checks of [DeviceIntegrity] so views can read them
+ * without doing file system probes, process execution or binder calls on the main thread.
+ *
+ * The checks run in the background when the monitor is created, whenever the device is unlocked,
+ * whenever the app comes back to the foreground and when a cached value older than [ttlMillis]
+ * is read. The checks never run on the calling thread: until the first evaluation lands the device
+ * is reported as rooted and not secure, and [Listener]s are notified on the main thread once the
+ * result is known or changes.
+ */
+internal class DeviceIntegrityMonitor(
+    context: Context,
+    private val deviceIntegrity: DeviceIntegrity,
+    private val ttlMillis: Long = DEFAULT_TTL_MILLIS,
+    dispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+
+    @Volatile
+    private var integrity: Integrity? = null
+
+    private val isEvaluating = AtomicBoolean(false)
+
+    private val listeners = CopyOnWriteArraySet<Listener>()
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    private val unlockReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            refresh()
+        }
+    }
+
+    private val foregroundListener = object : AppForegroundTracker.Listener {
+        override fun onForeground() {
+            refresh()
+        }
+    }
+
+    init {
+        val appContext = context.applicationContext ?: context
+        appContext.registerReceiver(unlockReceiver, IntentFilter(Intent.ACTION_USER_PRESENT))
+        AppForegroundTracker.addListener(foregroundListener)
+        refresh()
+    }
+
+    /**
+     * Cached result of [DeviceIntegrity.isDeviceRooted].
+     */
+    fun isDeviceRooted(): Boolean = getIntegrity().isRooted
+
+    /**
+     * Cached result of [DeviceIntegrity.isDeviceSecure].
+     */
+    fun isDeviceSecure(): Boolean = getIntegrity().isSecure
+
+    /**
+     * Whether the first evaluation has completed, before that the cached results are the
+     * conservative pending values.
+     */
+    fun isReady(): Boolean = integrity != null
+
+    fun addListener(listener: Listener) {
+        listeners.add(listener)
+    }
+
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+
+    /**
+     * Re-evaluate the checks in the background, unless an evaluation is already running.
+     */
+    fun refresh() {
+        if (!isEvaluating.compareAndSet(false, true)) {
+            return
+        }
+
+        scope.launch {
+            try {
+                val previous = integrity
+                val current = evaluate()
+                integrity = current
+                if (previous == null || previous.isRooted != current.isRooted || previous.isSecure != current.isSecure) {
+                    notifyListeners()
+                }
+            } catch (e: Exception) {
+                SdkLog.e(MfaLogCategory.DEVICE, e) { "Failed to evaluate device integrity" }
+            } finally {
+                isEvaluating.set(false)
+            }
+        }
+    }
+
+    private fun notifyListeners() {
+        mainHandler.post {
+            listeners.forEach { it.onIntegrityChanged() }
+        }
+    }
+
+    private fun getIntegrity(): Integrity {
+        // A read before the first background evaluation lands gets the conservative values, the
+        // listeners are notified once the real ones are known
+        val current = integrity ?: run {
+            refresh()
+            return PENDING
+        }
+
+        if (SystemClock.elapsedRealtime() - current.evaluatedAt > ttlMillis) {
+            refresh()
+        }
+        return current
+    }
+
+    private fun evaluate(): Integrity = Integrity(
+        isRooted = deviceIntegrity.isDeviceRooted(),
+        isSecure = deviceIntegrity.isDeviceSecure(),
+        evaluatedAt = SystemClock.elapsedRealtime()
+    )
+
+    private data class Integrity(
+        val isRooted: Boolean,
+        val isSecure: Boolean,
+        val evaluatedAt: Long
+    )
+
+    interface Listener {
+        fun onIntegrityChanged()
+    }
+
+    companion object {
+        const val DEFAULT_TTL_MILLIS = 5 * 60 * 1000L
+
+        private val PENDING = Integrity(isRooted = true, isSecure = false, evaluatedAt = 0)
+    }
+}
@@ -4,9 +4,17 @@ import com.onelogin.mfa.data.api.RegistrationResponse
 import com.onelogin.mfa.data.api.SettingsResponse
 import com.onelogin.mfa.model.Factor
 
-internal interface DeviceManager {
+internal interface DeviceManager : DeviceIntegrity {
     suspend fun registerDevice(code: String, issuer: String, shard: String): RegistrationResponse
     suspend fun checkDeviceSettings(factor: Factor): SettingsResponse
-    fun isDeviceSecure(): Boolean
-    fun isDeviceRooted(): Boolean
+
+    /**
+     * Forget anything kept about the settings of [credentialIds], whose factors were removed.
+     */
+    suspend fun removeDeviceSettings(credentialIds: Collection<String>) {}
+
+    /**
+     * Forget anything kept about the settings of every factor.
+     */
+    suspend fun removeAllDeviceSettings() {}
 }
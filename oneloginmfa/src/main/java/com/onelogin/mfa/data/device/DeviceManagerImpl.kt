@@ -1,8 +1,6 @@
 package com.onelogin.mfa.data.device
 
-import android.app.KeyguardManager
 import android.content.Context
-import android.os.Build
 import com.onelogin.mfa.data.OneLoginMfaException
 import com.onelogin.mfa.data.api.OneLoginApiService
 import com.onelogin.mfa.data.api.RegistrationResponse
@@ -15,15 +13,13 @@ import com.onelogin.mfa.data.network.NetworkUtils.apiCall
 import com.onelogin.mfa.model.Factor
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.Dispatchers
-import java.io.BufferedReader
-import java.io.File
-import java.io.InputStreamReader
 
 internal class DeviceManagerImpl(
     private val context: Context,
     private val oneLoginApiService: OneLoginApiService,
-    private val dispatcher: CoroutineDispatcher = Dispatchers.IO
-    ): DeviceManager {
+    private val dispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val deviceIntegrity: DeviceIntegrity = DeviceIntegrityImpl(context)
+    ): DeviceManager, DeviceIntegrity by deviceIntegrity {
 
     override suspend fun registerDevice(code: String, issuer: String, shard: String): RegistrationResponse {
         val registrationResponse = apiCall(dispatcher) {
@@ -79,9 +75,10 @@ internal class DeviceManagerImpl(
                 )
             }
             is GenericException -> {
+                // The failure itself is kept as the cause, so an I/O failure can be told apart
                 throw OneLoginMfaException(
                     settingsResponse.throwable.message,
-                    settingsResponse.throwable.cause
+                    settingsResponse.throwable
                 )
             }
             else -> {
@@ -89,37 +86,4 @@ internal class DeviceManagerImpl(
             }
         }
     }
-
-    override fun isDeviceSecure(): Boolean {
-        val keyguardManager = context.getSystemService(Context.KEYGUARD_SERVICE) as KeyguardManager
-        return keyguardManager.isKeyguardSecure
-    }
-
-    override fun isDeviceRooted(): Boolean {
-        // There is no way to verify with 100% certainty whether or not a device is rooted
-        val buildTags = Build.TAGS
-        if (buildTags != null && buildTags.contains("test-keys"))
-            return true
-
-
-        // Check if Superuser.apk or any su binaries exist
-        val paths = arrayOf("/system/app/Superuser.apk", "/sbin/su", "/system/bin/su", "/system/xbin/su", "/data/local/xbin/su", "/data/local/bin/su", "/system/sd/xbin/su", "/system/bin/failsafe/su", "/data/local/su", "/su/bin/su")
-        for (path in paths) {
-            if (File(path).exists()) return true
-        }
-
-        // Attempt to run su
-        var process: Process? = null
-        return try {
-            process = Runtime.getRuntime().exec(arrayOf("/system/xbin/which", "su"))
-            val bufferedReader = BufferedReader(InputStreamReader(process!!.inputStream))
-            bufferedReader.readLine() != null
-        } catch (t: Throwable) {
-            false
-        } finally {
-            process?.destroy()
-        }
-    }
-
-
 }
@@ -0,0 +1,127 @@
+package com.onelogin.mfa.data.encryption
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.SystemClock
+import com.onelogin.mfa.data.util.AppForegroundTracker
+import java.util.*
+
+/**
+ * Keeps decrypted seeds in memory, keyed by factor id, so loading the same factors again does not
+ * go through [EncryptionManager]. An entry is only returned for the encrypted seed it was decrypted
+ * from, so a seed written by another path is never served stale.
+ *
+ * Seeds are kept as byte arrays which are zeroed as soon as the entry is evicted, either explicitly,
+ * when it is older than [ttlMillis], or when [evictOnBackgroundOrLock] triggers. A [ttlMillis] of
+ * 0 disables the cache.
+ */
+internal class DecryptedSeedCache(
+    private val ttlMillis: Long = DEFAULT_TTL_MILLIS,
+    private val getTime: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+
+    private class Entry(
+        val encryptedSeed: String,
+        val credentialId: String?,
+        val seed: ByteArray,
+        val storedAt: Long
+    )
+
+    private val entries = HashMap<Long, Entry>()
+
+    private val lockReceiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) {
+            clear()
+        }
+    }
+
+    private val backgroundListener = object : AppForegroundTracker.Listener {
+        override fun onBackground() {
+            clear()
+        }
+    }
+
+    /**
+     * Clear the cache whenever the screen turns off or the app goes to the background.
+     */
+    fun evictOnBackgroundOrLock(context: Context) {
+        val appContext = context.applicationContext ?: context
+        appContext.registerReceiver(lockReceiver, IntentFilter(Intent.ACTION_SCREEN_OFF))
+        AppForegroundTracker.addListener(backgroundListener)
+    }
+
+    /**
+     * @return Returns the decrypted seed of factor [id] if it was decrypted from [encryptedSeed]
+     * and has not expired, null otherwise
+     */
+    @Synchronized
+    fun get(id: Long, encryptedSeed: String): String? {
+        val entry = entries[id] ?: return null
+        if (entry.encryptedSeed != encryptedSeed || isExpired(entry)) {
+            remove(id)
+            return null
+        }
+        return String(entry.seed, Charsets.UTF_8)
+    }
+
+    /**
+     * Store the decrypted [seed] of factor [id]. The cache owns [seed] from now on and zeroes it
+     * on eviction.
+     */
+    @Synchronized
+    fun put(id: Long, credentialId: String?, encryptedSeed: String, seed: ByteArray) {
+        if (ttlMillis <= 0) {
+            seed.fill(0)
+            return
+        }
+
+        entries.put(id, Entry(encryptedSeed, credentialId, seed, getTime()))?.let { zero(it) }
+        evictExpired()
+    }
+
+    @Synchronized
+    fun remove(id: Long) {
+        entries.remove(id)?.let { zero(it) }
+    }
+
+    @Synchronized
+    fun removeByCredentialId(credentialId: String) {
+        val iterator = entries.values.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.credentialId == credentialId) {
+                zero(entry)
+                iterator.remove()
+            }
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.values.forEach { zero(it) }
+        entries.clear()
+    }
+
+    private fun evictExpired() {
+        val iterator = entries.values.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (isExpired(entry)) {
+                zero(entry)
+                iterator.remove()
+            }
+        }
+    }
+
+    private fun isExpired(entry: Entry): Boolean = getTime() - entry.storedAt > ttlMillis
+
+    private fun zero(entry: Entry) {
+        entry.seed.fill(0)
+    }
+
+    companion object {
+        const val DEFAULT_TTL_MILLIS = 5 * 60 * 1000L
+    }
+}
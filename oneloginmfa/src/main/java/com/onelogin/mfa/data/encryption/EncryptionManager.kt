@@ -18,9 +18,28 @@ interface EncryptionManager{
      */
     fun decrypt(encryptedData: String): String
 
+    /**
+     * Checks whether `encryptedData` uses the current encryption format. Data in an older format
+     * can still be decrypted, but should be encrypted again to benefit from the current format.
+     * @return True if `encryptedData` was generated by the current `encrypt()`, else false
+     */
+    fun isCurrentFormat(encryptedData: String): Boolean
+
     /**
      * Checks whether or not encryption is supported on the device
      * @return True if encryption is supported, else false
      */
     fun isSupported(): Boolean
+
+    /**
+     * Checks whether every stored seed was already encrypted again in the current format
+     * @return True once `setMigrated()` was called for the current keys, else false
+     */
+    fun isMigrated(): Boolean = false
+
+    /**
+     * Records that every stored seed uses the current format, so the stored seeds do not have to be
+     * checked again
+     */
+    fun setMigrated() {}
 }
@@ -2,40 +2,57 @@ package com.onelogin.mfa.data.encryption
 
 import android.content.Context
 import android.content.SharedPreferences
-import android.os.Build
-import android.security.KeyPairGeneratorSpec
-import android.security.keystore.KeyGenParameterSpec
-import android.security.keystore.KeyProperties
 import android.util.Base64
-import timber.log.Timber
-import java.math.BigInteger
+import com.onelogin.mfa.OneLoginMfa
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.data.metrics.SdkTrace
+import com.onelogin.mfa.model.MfaLogCategory
+import com.onelogin.mfa.model.MfaOperation
 import java.security.*
-import java.util.*
 import javax.crypto.Cipher
+import javax.crypto.KeyGenerator
 import javax.crypto.NoSuchPaddingException
-import javax.security.auth.x500.X500Principal
+import javax.crypto.SecretKey
+import javax.crypto.spec.GCMParameterSpec
+import javax.crypto.spec.SecretKeySpec
 
-internal class EncryptionManagerImpl(private val context: Context): EncryptionManager {
+/**
+ * Envelope encryption: seeds are encrypted with an AES-GCM data key, and only the data key is
+ * encrypted (wrapped) with the RSA key pair kept in the AndroidKeyStore. The data key is unwrapped
+ * once per process, so encrypting or decrypting a seed does not require a keystore operation.
+ *
+ * Seeds encrypted directly with RSA by earlier versions can still be decrypted, see [isCurrentFormat].
+ *
+ * Each thread gets its own AES cipher, so seeds can be encrypted and decrypted concurrently. Only the
+ * legacy RSA path, which goes through the shared keystore ciphers, is serialized.
+ */
+internal class EncryptionManagerImpl(
+    private val context: Context,
+    private val metrics: MetricsRecorder = OneLoginMfa.metrics,
+    private val keyPairStore: KeyPairStore = KeyPairStoreImpl(context)
+): EncryptionManager {
 
     private var decryptCipher: Cipher? = null
     private var encryptCipher: Cipher? = null
     private var masterKey: KeyPair? = null
-    private var sharedPreferences: SharedPreferences = context.getSharedPreferences(SHARED_PREFERENCES, Context.MODE_PRIVATE)
-
-    init {
-        try {
-            if (isSupported())
-                generateKeys()
-        } catch (e: Exception) {
-            Timber.e(e, "Error in generating keys")
-            setIsEncryptionSupported(false)
-        }
+    @Volatile
+    private var dataKey: SecretKey? = null
+    private val dataCipher = object : ThreadLocal<Cipher>() {
+        override fun initialValue(): Cipher = Cipher.getInstance(DATA_TRANSFORMATION)
+    }
+    private val secureRandom = SecureRandom()
+    private val sharedPreferences: SharedPreferences by lazy {
+        context.getSharedPreferences(SHARED_PREFERENCES, Context.MODE_PRIVATE)
     }
 
     @Synchronized
     fun initialize() {
-        if (masterKey == null)
-            masterKey = getAndroidKeyStoreAsymmetricKeyPair()
+        // The key pair is only generated or loaded on first use, so creating the manager is cheap
+        if (masterKey == null) {
+            ensureKeys()
+            masterKey = keyPairStore.getKeyPair()
+        }
 
         if (encryptCipher == null) {
             encryptCipher = prepareCipher()
@@ -48,27 +65,48 @@ internal class EncryptionManagerImpl(private val context: Context): EncryptionMa
         }
     }
 
-    @Synchronized
-    override fun encrypt(plainData: String): String {
-        initialize()
-        val bytes = encryptCipher?.doFinal(plainData.toByteArray())
-        return Base64.encodeToString(bytes, Base64.DEFAULT)
+    override fun encrypt(plainData: String): String = SdkTrace.section("EncryptionManager.encrypt") {
+        metrics.measure(MfaOperation.ENCRYPT) { encryptData(plainData) }
     }
 
-    @Synchronized
-    override fun decrypt(encryptedData: String): String {
-        initialize()
-        val encryptedDataDecoded = Base64.decode(encryptedData, Base64.DEFAULT)
-        val decodedData = decryptCipher?.doFinal(encryptedDataDecoded)
-        return String(decodedData!!)
+    override fun decrypt(encryptedData: String): String = SdkTrace.section("EncryptionManager.decrypt") {
+        metrics.measure(MfaOperation.DECRYPT) { decryptData(encryptedData) }
     }
 
+    private fun encryptData(plainData: String): String {
+        val iv = ByteArray(GCM_IV_LENGTH)
+        secureRandom.nextBytes(iv)
+
+        val cipher = dataCipher.get()!!
+        cipher.init(Cipher.ENCRYPT_MODE, getDataKey(), GCMParameterSpec(GCM_TAG_LENGTH, iv))
+        val encrypted = cipher.doFinal(plainData.toByteArray())
+
+        val payload = ByteArray(iv.size + encrypted.size)
+        System.arraycopy(iv, 0, payload, 0, iv.size)
+        System.arraycopy(encrypted, 0, payload, iv.size, encrypted.size)
+        return DATA_KEY_FORMAT_PREFIX + Base64.encodeToString(payload, Base64.NO_WRAP)
+    }
+
+    private fun decryptData(encryptedData: String): String {
+        if (!isCurrentFormat(encryptedData)) {
+            return decryptLegacy(encryptedData)
+        }
+
+        val payload = Base64.decode(encryptedData.substring(DATA_KEY_FORMAT_PREFIX.length), Base64.NO_WRAP)
+        val cipher = dataCipher.get()!!
+        cipher.init(Cipher.DECRYPT_MODE, getDataKey(), GCMParameterSpec(GCM_TAG_LENGTH, payload, 0, GCM_IV_LENGTH))
+        return String(cipher.doFinal(payload, GCM_IV_LENGTH, payload.size - GCM_IV_LENGTH))
+    }
+
+    override fun isCurrentFormat(encryptedData: String): Boolean =
+        encryptedData.startsWith(DATA_KEY_FORMAT_PREFIX)
+
     override fun isSupported(): Boolean {
         if (isEncryptionSupportChecked())
             return isEncryptionSupported()
 
         val result = try {
-            generateKeys()
+            SdkTrace.section("EncryptionManager.generateKeys") { keyPairStore.generateKeyPair() }
             setIsEncryptionSupported(true)
             true
         } catch (e: Exception) {
@@ -80,44 +118,88 @@ internal class EncryptionManagerImpl(private val context: Context): EncryptionMa
         return result
     }
 
-    @Suppress("DEPRECATION")
-    private fun generateKeys() {
-        if (getAndroidKeyStoreAsymmetricKeyPair() != null)
-            return
+    @Synchronized
+    private fun decryptLegacy(encryptedData: String): String {
+        initialize()
+        val encryptedDataDecoded = Base64.decode(encryptedData, Base64.DEFAULT)
+        val decodedData = decryptCipher?.doFinal(encryptedDataDecoded)
+        return String(decodedData!!)
+    }
 
-        val generator = KeyPairGenerator.getInstance(RSA_ENCRYPTION, PROVIDER)
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            val builder = KeyGenParameterSpec.Builder(ALIAS, KeyProperties.PURPOSE_ENCRYPT or KeyProperties.PURPOSE_DECRYPT)
-                .setBlockModes(KeyProperties.BLOCK_MODE_ECB)
-                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_RSA_PKCS1)
+    /**
+     * Unwraps the data key with the keystore key pair, or generates and stores it on first use.
+     */
+    private fun getDataKey(): SecretKey = dataKey ?: synchronized(this) {
+        dataKey ?: SdkTrace.section("EncryptionManager.loadDataKey") { loadDataKey() }
+    }
 
-            generator.initialize(builder.build())
-        } else {
-            val start = Calendar.getInstance()
-            val end = Calendar.getInstance()
-            end.add(Calendar.YEAR, 20)
+    private fun loadDataKey(): SecretKey {
+        initialize()
+        val key = unwrapDataKey() ?: generateDataKey()
+        dataKey = key
+        return key
+    }
 
-            val builder = KeyPairGeneratorSpec.Builder(context)
-                .setAlias(ALIAS)
-                .setSubject(X500Principal("CN=" + ALIAS + "CA Certificate"))
-                .setSerialNumber(BigInteger.ONE)
-                .setStartDate(start.time)
-                .setEndDate(end.time)
+    /**
+     * @return Returns the stored data key, or null if there is none or it was wrapped by another
+     * key pair, e.g. because the keystore was reset
+     */
+    private fun unwrapDataKey(): SecretKey? {
+        val wrappedKey = sharedPreferences.getString(WRAPPED_DATA_KEY, null) ?: return null
+        val keyPairId = sharedPreferences.getString(WRAPPED_DATA_KEY_PAIR, null)
+        if (keyPairId != null && keyPairId != getKeyPairId()) {
+            SdkLog.w(MfaLogCategory.ENCRYPTION) { "Key pair changed, replacing the data key" }
+            return null
+        }
 
-            generator.initialize(builder.build())
+        return try {
+            val unwrappedKey = decryptCipher?.doFinal(Base64.decode(wrappedKey, Base64.NO_WRAP))
+            SecretKeySpec(unwrappedKey!!, DATA_KEY_ALGORITHM).also {
+                // Data keys stored before the key pair was recorded
+                if (keyPairId == null) {
+                    with(sharedPreferences.edit()) {
+                        putString(WRAPPED_DATA_KEY_PAIR, getKeyPairId())
+                        commit()
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            SdkLog.e(MfaLogCategory.ENCRYPTION, e) { "Failed to unwrap the data key, replacing it" }
+            null
         }
+    }
 
-        generator.generateKeyPair()
+    /**
+     * Generate a data key and store it wrapped, along with the key pair which wrapped it. Seeds
+     * encrypted with a previous data key cannot be decrypted anymore, so a previous migration no
+     * longer holds either.
+     */
+    private fun generateDataKey(): SecretKey {
+        val generator = KeyGenerator.getInstance(DATA_KEY_ALGORITHM)
+        generator.init(DATA_KEY_SIZE, secureRandom)
+        val generatedKey = generator.generateKey()
+        with(sharedPreferences.edit()) {
+            putString(WRAPPED_DATA_KEY, Base64.encodeToString(encryptCipher?.doFinal(generatedKey.encoded), Base64.NO_WRAP))
+            putString(WRAPPED_DATA_KEY_PAIR, getKeyPairId())
+            remove(MIGRATED_TO_DATA_KEY)
+            commit()
+        }
+        return generatedKey
     }
 
-    private fun prepareKeyStore(): KeyStore? {
-        return try {
-            val keyStore = KeyStore.getInstance(PROVIDER)
-            keyStore.load(null)
-            keyStore
+    // Hash of the public key, which identifies the key pair without exposing any secret
+    private fun getKeyPairId(): String? {
+        val publicKey = masterKey?.public?.encoded ?: return null
+        return Base64.encodeToString(MessageDigest.getInstance(KEY_PAIR_ID_ALGORITHM).digest(publicKey), Base64.NO_WRAP)
+    }
+
+    private fun ensureKeys() {
+        try {
+            if (isSupported())
+                keyPairStore.generateKeyPair()
         } catch (e: Exception) {
-            Timber.e(e, "KeyStore not supported")
-            null
+            SdkLog.e(MfaLogCategory.ENCRYPTION, e) { "Error in generating keys" }
+            setIsEncryptionSupported(false)
         }
     }
 
@@ -134,15 +216,22 @@ internal class EncryptionManagerImpl(private val context: Context): EncryptionMa
         return cipher
     }
 
-    private fun getAndroidKeyStoreAsymmetricKeyPair(): KeyPair? {
-        val keyStore: KeyStore? = prepareKeyStore()
-        val privateKey = keyStore?.getKey(ALIAS, null) as PrivateKey?
-        val publicKey = keyStore?.getCertificate(ALIAS)?.publicKey
+    // Kept next to the wrapped data key and dropped with it, so the seeds are checked again once
+    // the data key is replaced
+    override fun isMigrated(): Boolean {
+        try {
+            getDataKey()
+        } catch (e: Exception) {
+            SdkLog.e(MfaLogCategory.ENCRYPTION, e) { "Failed to load the data key" }
+            return false
+        }
+        return sharedPreferences.getBoolean(MIGRATED_TO_DATA_KEY, false)
+    }
 
-        return if (privateKey != null && publicKey != null) {
-            KeyPair(publicKey, privateKey)
-        } else {
-            null
+    override fun setMigrated() {
+        with(sharedPreferences.edit()) {
+            putBoolean(MIGRATED_TO_DATA_KEY, true)
+            apply()
         }
     }
 
@@ -162,11 +251,19 @@ internal class EncryptionManagerImpl(private val context: Context): EncryptionMa
 
     companion object {
         private const val TRANSFORMATION = "RSA/ECB/PKCS1Padding"
-        private const val PROVIDER = "AndroidKeyStore"
-        private const val RSA_ENCRYPTION = "RSA"
-        private const val ALIAS = "ONELOGIN"
         private const val SHARED_PREFERENCES = "oneloginMfaPreferences"
         private const val ENCRYPTION_SUPPORTED = "oneloginMfaEncryptionSupported"
         private const val ENCRYPTION_SUPPORT_CHECKED = "oneloginMfaEncryptionSupportChecked"
+        private const val WRAPPED_DATA_KEY = "oneloginMfaWrappedDataKey"
+        private const val WRAPPED_DATA_KEY_PAIR = "oneloginMfaWrappedDataKeyPair"
+        private const val MIGRATED_TO_DATA_KEY = "oneloginMfaMigratedToDataKey"
+        private const val KEY_PAIR_ID_ALGORITHM = "SHA-256"
+        private const val DATA_TRANSFORMATION = "AES/GCM/NoPadding"
+        private const val DATA_KEY_ALGORITHM = "AES"
+        private const val DATA_KEY_SIZE = 256
+        private const val GCM_IV_LENGTH = 12
+        private const val GCM_TAG_LENGTH = 128
+        // Base64 never produces ':', so this cannot collide with the legacy RSA format
+        private const val DATA_KEY_FORMAT_PREFIX = "v2:"
     }
 }
@@ -0,0 +1,52 @@
+package com.onelogin.mfa.data.encryption
+
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.data.repository.MfaRepository
+import com.onelogin.mfa.model.MfaLogCategory
+
+/**
+ * Encrypts again the seeds that are still stored in an older format of [EncryptionManager], so that
+ * they can be decrypted without the cost of the older format afterwards. Only the seed column is
+ * written, so it is safe to run while other factor operations are in progress.
+ */
+internal class EncryptionMigrator(
+    private val repository: MfaRepository,
+    private val encryptionManager: EncryptionManager
+) {
+
+    /**
+     * Only scans the stored factors until a scan migrated all of them, new seeds are
+     * always stored in the current format.
+     *
+     * @return Returns the number of migrated factors
+     */
+    suspend fun migrate(): Int {
+        if (!encryptionManager.isSupported() || encryptionManager.isMigrated()) {
+            return 0
+        }
+
+        var migrated = 0
+        var failed = 0
+        for (factor in repository.getAllFactors()) {
+            if (encryptionManager.isCurrentFormat(factor.seed)) {
+                continue
+            }
+
+            try {
+                val seed = encryptionManager.encrypt(encryptionManager.decrypt(factor.seed))
+                migrated += repository.updateFactorSeed(factor.id, seed)
+            } catch (e: Exception) {
+                failed++
+                SdkLog.e(MfaLogCategory.ENCRYPTION, e) { "Failed to migrate encryption of factor ${factor.id}" }
+            }
+        }
+
+        if (failed == 0) {
+            encryptionManager.setMigrated()
+        }
+        if (migrated > 0) {
+            SdkLog.d(MfaLogCategory.ENCRYPTION) { "Migrated encryption of $migrated factors" }
+        }
+        return migrated
+    }
+}
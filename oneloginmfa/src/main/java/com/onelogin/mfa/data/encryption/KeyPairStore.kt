@@ -0,0 +1,19 @@
+package com.onelogin.mfa.data.encryption
+
+import java.security.KeyPair
+
+/**
+ * Holds the RSA key pair wrapping the data key of [EncryptionManagerImpl].
+ */
+internal interface KeyPairStore {
+
+    /**
+     * @return Returns the stored key pair, or null if there is none
+     */
+    fun getKeyPair(): KeyPair?
+
+    /**
+     * Generate and store a key pair, unless one is already stored.
+     */
+    fun generateKeyPair()
+}
@@ -0,0 +1,81 @@
+package com.onelogin.mfa.data.encryption
+
+import android.content.Context
+import android.os.Build
+import android.security.KeyPairGeneratorSpec
+import android.security.keystore.KeyGenParameterSpec
+import android.security.keystore.KeyProperties
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.model.MfaLogCategory
+import java.math.BigInteger
+import java.security.KeyPair
+import java.security.KeyPairGenerator
+import java.security.KeyStore
+import java.security.PrivateKey
+import java.util.*
+import javax.security.auth.x500.X500Principal
+
+/**
+ * Keeps the key pair in the AndroidKeyStore, so its private key never leaves the keystore.
+ */
+internal class KeyPairStoreImpl(private val context: Context) : KeyPairStore {
+
+    override fun getKeyPair(): KeyPair? {
+        val keyStore: KeyStore? = prepareKeyStore()
+        val privateKey = keyStore?.getKey(ALIAS, null) as PrivateKey?
+        val publicKey = keyStore?.getCertificate(ALIAS)?.publicKey
+
+        return if (privateKey != null && publicKey != null) {
+            KeyPair(publicKey, privateKey)
+        } else {
+            null
+        }
+    }
+
+    @Suppress("DEPRECATION")
+    override fun generateKeyPair() {
+        if (getKeyPair() != null)
+            return
+
+        val generator = KeyPairGenerator.getInstance(RSA_ENCRYPTION, PROVIDER)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            val builder = KeyGenParameterSpec.Builder(ALIAS, KeyProperties.PURPOSE_ENCRYPT or KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_ECB)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_RSA_PKCS1)
+
+            generator.initialize(builder.build())
+        } else {
+            val start = Calendar.getInstance()
+            val end = Calendar.getInstance()
+            end.add(Calendar.YEAR, 20)
+
+            val builder = KeyPairGeneratorSpec.Builder(context)
+                .setAlias(ALIAS)
+                .setSubject(X500Principal("CN=" + ALIAS + "CA Certificate"))
+                .setSerialNumber(BigInteger.ONE)
+                .setStartDate(start.time)
+                .setEndDate(end.time)
+
+            generator.initialize(builder.build())
+        }
+
+        generator.generateKeyPair()
+    }
+
+    private fun prepareKeyStore(): KeyStore? {
+        return try {
+            val keyStore = KeyStore.getInstance(PROVIDER)
+            keyStore.load(null)
+            keyStore
+        } catch (e: Exception) {
+            SdkLog.e(MfaLogCategory.ENCRYPTION, e) { "KeyStore not supported" }
+            null
+        }
+    }
+
+    companion object {
+        private const val PROVIDER = "AndroidKeyStore"
+        private const val RSA_ENCRYPTION = "RSA"
+        private const val ALIAS = "ONELOGIN"
+    }
+}
@@ -1,6 +1,7 @@
 package com.onelogin.mfa.data.factor
 
 import com.onelogin.mfa.model.Factor
+import kotlinx.coroutines.flow.Flow
 import java.util.*
 
 internal interface FactorManager {
@@ -16,8 +17,12 @@ internal interface FactorManager {
     suspend fun getFactorsByIssuer(issuer: String): List<Factor>
     suspend fun getFactorById(id: Long): Factor?
     suspend fun getFactorByCredentialId(credentialId: String): Factor?
+    fun observeFactors(): Flow<List<Factor>>
+    fun observeFactorById(id: Long): Flow<Factor?>
+    fun observeFactorByCredentialId(credentialId: String): Flow<Factor?>
     suspend fun removeFactor(factor: Factor): Int
     suspend fun removeAllFactors(): Int
     suspend fun removeFactorById(id: Long): Int
     suspend fun removeFactorByCredentialId(credentialId: String): Int
+    suspend fun applyRefresh(unpairedFactors: List<Factor>, updatedFactors: List<Factor>): Int
 }
@@ -4,34 +4,54 @@ import android.net.Uri
 import com.onelogin.mfa.data.OneLoginMfaException
 import com.onelogin.mfa.data.api.SubdomainApiService
 import com.onelogin.mfa.data.device.DeviceManager
+import com.onelogin.mfa.data.encryption.DecryptedSeedCache
 import com.onelogin.mfa.data.encryption.EncryptionManager
+import com.onelogin.mfa.OneLoginMfa
 import com.onelogin.mfa.data.factor.FactorManager.Companion.CRYPTO_SUPPORTED
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.data.metrics.SdkTrace
 import com.onelogin.mfa.data.repository.MfaRepository
 import com.onelogin.mfa.data.util.OneLoginMfaUtils
 import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.MfaLogCategory
+import com.onelogin.mfa.model.MfaOperation
+import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.withContext
-import timber.log.Timber
 import java.util.*
-import kotlin.collections.ArrayList
 
 internal class FactorManagerImpl(
     private val repository: MfaRepository,
     private val encryptionManager: EncryptionManager,
     private val deviceManager: DeviceManager,
-    subdomainApi: SubdomainApiService
+    subdomainApi: SubdomainApiService,
+    private val seedCache: DecryptedSeedCache = DecryptedSeedCache(),
+    private val decryptDispatcher: CoroutineDispatcher = Dispatchers.Default,
+    private val metrics: MetricsRecorder = OneLoginMfa.metrics
 ): FactorManager {
 
-    private val webLoginHelper: WebLoginHelper = WebLoginHelper(subdomainApi)
+    private val webLoginHelper: WebLoginHelper = WebLoginHelper(subdomainApi, metrics = metrics)
 
     override suspend fun registerFactor(code: String): Long {
         if (code.isEmpty() || code.isBlank()) {
             throw OneLoginMfaException("Invalid code format")
         }
-        return if (OneLoginMfaUtils.isOneLoginCode(code)) {
-            registerOneLoginFactor(code)
-        } else {
-            registerThirdPartyFactor(code)
+        return SdkTrace.asyncSection("FactorManager.registerFactor") {
+            metrics.measure(MfaOperation.REGISTER_FACTOR) {
+                if (OneLoginMfaUtils.isOneLoginCode(code)) {
+                    registerOneLoginFactor(code)
+                } else {
+                    registerThirdPartyFactor(code)
+                }
+            }
         }
     }
 
@@ -41,8 +61,10 @@ internal class FactorManagerImpl(
         password: String
     ): Long = registerFactor(webLoginHelper.register(subdomain, username, password))
 
-    override suspend fun updateFactor(factor: Factor): Int =
-        repository.updateFactor(encryptFactor(factor))
+    override suspend fun updateFactor(factor: Factor): Int {
+        seedCache.remove(factor.id)
+        return repository.updateFactor(encryptFactor(factor))
+    }
 
     override suspend fun getFactors(): List<Factor> =
         decryptFactors(repository.getAllFactors())
@@ -70,17 +92,84 @@ internal class FactorManagerImpl(
         }
     }
 
-    override suspend fun removeFactor(factor: Factor): Int =
-        repository.deleteFactor(factor)
+    /**
+     * Only the factors whose row changed since the previous emission are decrypted again, the seeds
+     * of the others are carried over.
+     */
+    override fun observeFactors(): Flow<List<Factor>> = flow {
+        var previous = emptyMap<Long, DecryptedRow>()
+
+        repository.observeAllFactors().distinctUntilChanged().collect { factors ->
+            val current = HashMap<Long, DecryptedRow>(factors.size)
+            val pending = ArrayList<Factor>()
+
+            for (factor in factors) {
+                val row = previous[factor.id]
+                if (row != null && row.encrypted == factor) {
+                    current[factor.id] = row
+                } else {
+                    pending.add(factor)
+                }
+            }
+
+            if (pending.isNotEmpty()) {
+                // Decrypt copies, the rows themselves are still compared upstream
+                val encryptedById = pending.associateBy { it.id }
+                for (factor in decryptFactors(pending.map { it.copy() })) {
+                    current[factor.id] = DecryptedRow(encryptedById.getValue(factor.id), factor)
+                }
+            }
+
+            previous = current
+            emit(factors.mapNotNull { current[it.id]?.decrypted?.copy() })
+        }
+    }.distinctUntilChanged()
 
-    override suspend fun removeAllFactors(): Int =
-        repository.deleteAllFactors()
+    override fun observeFactorById(id: Long): Flow<Factor?> =
+        observeFactor(repository.observeFactorById(id))
 
-    override suspend fun removeFactorById(id: Long): Int =
-        repository.deleteFactorById(id)
+    override fun observeFactorByCredentialId(credentialId: String): Flow<Factor?> =
+        observeFactor(repository.observeFactorByCredentialId(credentialId))
 
-    override suspend fun removeFactorByCredentialId(credentialId: String): Int =
-        repository.deleteFactorByCredentialId(credentialId)
+    override suspend fun removeFactor(factor: Factor): Int {
+        seedCache.remove(factor.id)
+        return repository.deleteFactor(factor).also { removeDeviceSettings(factor.credentialId) }
+    }
+
+    override suspend fun removeAllFactors(): Int {
+        seedCache.clear()
+        return repository.deleteAllFactors().also { deviceManager.removeAllDeviceSettings() }
+    }
+
+    override suspend fun removeFactorById(id: Long): Int {
+        seedCache.remove(id)
+        val credentialId = repository.getFactorById(id)?.credentialId
+        return repository.deleteFactorById(id).also { removeDeviceSettings(credentialId) }
+    }
+
+    override suspend fun removeFactorByCredentialId(credentialId: String): Int {
+        seedCache.removeByCredentialId(credentialId)
+        return repository.deleteFactorByCredentialId(credentialId).also { removeDeviceSettings(credentialId) }
+    }
+
+    /**
+     * Persist the result of a refresh at once: unpaired factors are deleted and only the device
+     * settings of updated factors are written, so their seeds are not encrypted again.
+     */
+    override suspend fun applyRefresh(unpairedFactors: List<Factor>, updatedFactors: List<Factor>): Int {
+        if (unpairedFactors.isEmpty() && updatedFactors.isEmpty()) {
+            return 0
+        }
+
+        unpairedFactors.forEach { seedCache.remove(it.id) }
+        return repository.applyFactorChanges(unpairedFactors.map { it.id }, updatedFactors)
+    }
+
+    private suspend fun removeDeviceSettings(credentialId: String?) {
+        if (!credentialId.isNullOrEmpty()) {
+            deviceManager.removeDeviceSettings(listOf(credentialId))
+        }
+    }
 
     private fun checkCryptoSupport(crypto: String): Boolean {
         return CRYPTO_SUPPORTED.contains(crypto.toUpperCase(Locale.ROOT))
@@ -95,8 +184,10 @@ internal class FactorManagerImpl(
             throw OneLoginMfaException("Missing required fields")
         }
 
-        val registrationResponse = withContext(Dispatchers.IO) {
-            deviceManager.registerDevice(secret, issuer, shard)
+        val registrationResponse = metrics.measure(MfaOperation.REGISTER_FACTOR_NETWORK) {
+            withContext(Dispatchers.IO) {
+                deviceManager.registerDevice(secret, issuer, shard)
+            }
         }
 
         val factor = Factor()
@@ -108,15 +199,17 @@ internal class FactorManagerImpl(
         factor.credentialId = registrationResponse.credentialId
         factor.seed = registrationResponse.seed
 
-        val updatedSettings = withContext(Dispatchers.IO) {
-            deviceManager.checkDeviceSettings(factor)
+        val updatedSettings = metrics.measure(MfaOperation.REGISTER_FACTOR_SETTINGS) {
+            withContext(Dispatchers.IO) {
+                deviceManager.checkDeviceSettings(factor)
+            }
         }.settings
 
         factor.allowRoot = updatedSettings.disallowJailbrokenOrRooted == false
         factor.forceLock = updatedSettings.forceLockProtection == true
         factor.requireBiometrics = updatedSettings.biometricVerification
 
-        return repository.addFactor(encryptFactor(factor))
+        return persistFactor(factor)
     }
 
     private suspend fun registerThirdPartyFactor(code: String): Long {
@@ -134,7 +227,7 @@ internal class FactorManagerImpl(
 
         if (seed.isNullOrEmpty()) {
             factor.seed = code
-            return repository.addFactor(encryptFactor(factor))
+            return persistFactor(factor)
         }
 
         if (!checkCryptoSupport(crypto))
@@ -157,9 +250,14 @@ internal class FactorManagerImpl(
         if (period != null && period.isNotEmpty())
             factor.period = Integer.parseInt(period)
 
-        return repository.addFactor(encryptFactor(factor))
+        return persistFactor(factor)
     }
 
+    private suspend fun persistFactor(factor: Factor): Long =
+        metrics.measure(MfaOperation.REGISTER_FACTOR_PERSIST) {
+            repository.addFactor(encryptFactor(factor))
+        }
+
     private fun encryptFactor(factor: Factor): Factor {
         if (!encryptionManager.isSupported()) {
             return factor
@@ -170,7 +268,7 @@ internal class FactorManagerImpl(
             factor.seed = encryptedSeed
             factor
         } catch (e: Exception) {
-            Timber.e(e, "Corrupted factor detected while attempting encryption: $factor")
+            SdkLog.e(MfaLogCategory.FACTOR, e) { "Corrupted factor detected while attempting encryption: ${SdkLog.describe(factor)}" }
             CORRUPTED_FACTOR
         }
     }
@@ -180,36 +278,72 @@ internal class FactorManagerImpl(
             return factor
         }
 
+        val cachedSeed = seedCache.get(factor.id, factor.seed)
+        if (cachedSeed != null) {
+            factor.seed = cachedSeed
+            return factor
+        }
+
         return try {
-            val decryptedSeed = encryptionManager.decrypt(factor.seed)
+            val encryptedSeed = factor.seed
+            val decryptedSeed = encryptionManager.decrypt(encryptedSeed)
+            seedCache.put(factor.id, factor.credentialId, encryptedSeed, decryptedSeed.toByteArray(Charsets.UTF_8))
             factor.seed = decryptedSeed
             factor
         } catch (e: Exception) {
-            Timber.e(e, "Corrupted factor detected while attempting decryption: $factor")
+            SdkLog.e(MfaLogCategory.FACTOR, e) { "Corrupted factor detected while attempting decryption: ${SdkLog.describe(factor)}" }
             CORRUPTED_FACTOR
         }
     }
 
-    private fun decryptFactors(factors: List<Factor>) : List<Factor> {
+    private fun observeFactor(factorFlow: Flow<Factor?>): Flow<Factor?> =
+        factorFlow
+            .distinctUntilChanged()
+            .map { factor ->
+                factor?.let {
+                    withContext(decryptDispatcher) { decryptFactor(it.copy()) }.takeIf { it != CORRUPTED_FACTOR }
+                }
+            }
+            .distinctUntilChanged()
+
+    /**
+     * Decrypts the seeds off the calling thread, splitting the list in at most
+     * [MAX_DECRYPT_PARALLELISM] contiguous chunks so the result keeps the order of [factors].
+     */
+    private suspend fun decryptFactors(factors: List<Factor>): List<Factor> {
         if (!encryptionManager.isSupported()) {
             return factors
         }
 
-        val decryptedFactors = ArrayList<Factor>()
-        for (factor in factors) {
-            val decryptedFactor = decryptFactor(factor)
-            if (decryptedFactor == CORRUPTED_FACTOR)
-                continue
-
-            decryptedFactors.add(decryptedFactor)
+        if (factors.isEmpty()) {
+            return emptyList()
         }
 
-        return decryptedFactors
+        val parallelism = Runtime.getRuntime().availableProcessors()
+            .coerceIn(1, MAX_DECRYPT_PARALLELISM)
+            .coerceAtMost((factors.size + MIN_FACTORS_PER_CHUNK - 1) / MIN_FACTORS_PER_CHUNK)
+        val chunkSize = (factors.size + parallelism - 1) / parallelism
+
+        return SdkTrace.asyncSection("FactorManager.decryptFactors") {
+            withContext(decryptDispatcher) {
+                factors.chunked(chunkSize)
+                    .map { chunk ->
+                        async { SdkTrace.section("FactorManager.decryptChunk") { chunk.map { decryptFactor(it) } } }
+                    }
+                    .awaitAll()
+                    .flatten()
+                    .filter { it != CORRUPTED_FACTOR }
+            }
+        }
     }
 
+    private class DecryptedRow(val encrypted: Factor, val decrypted: Factor)
+
     companion object {
         val CORRUPTED_FACTOR: Factor = Factor()
         const val PROTECT_FACTOR_ID: Int = 8
         const val PROTECT_FACTOR_NAME: String = "OneLogin Protect"
+        private const val MAX_DECRYPT_PARALLELISM = 4
+        private const val MIN_FACTORS_PER_CHUNK = 4
     }
 }
@@ -0,0 +1,107 @@
+package com.onelogin.mfa.data.factor
+
+import com.onelogin.mfa.OneLoginMfa
+import com.onelogin.mfa.data.device.DeviceManager
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.MfaOperation
+import com.onelogin.mfa.model.RefreshFactorsSuccess
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+
+/**
+ * Checks the device settings of every OneLogin factor concurrently, at most [maxConcurrency] at a
+ * time. Factors are grouped by shard and each shard is limited to [MAX_REQUESTS_PER_SHARD] calls at
+ * a time, which matches the per host limit of the OkHttp dispatcher, so calls to the same shard
+ * reuse its connections instead of queueing inside OkHttp while holding a permit.
+ *
+ * Results are collected in the order of the factors once all calls completed and persisted together
+ * in a single transaction, see [FactorManager.applyRefresh]. If any call fails the others are
+ * cancelled, the error is thrown and nothing is persisted.
+ */
+internal class FactorRefresher(
+    private val factorManager: FactorManager,
+    private val deviceManager: DeviceManager,
+    maxConcurrency: Int = DEFAULT_MAX_CONCURRENCY,
+    private val metrics: MetricsRecorder = OneLoginMfa.metrics
+) {
+
+    private val maxConcurrency = maxConcurrency.coerceAtLeast(1)
+
+    suspend fun refresh(): RefreshFactorsSuccess = metrics.measure(MfaOperation.REFRESH_FACTORS) {
+        val factors = factorManager.getFactorsByIssuer(ONELOGIN_ISSUER)
+        val permits = Semaphore(maxConcurrency)
+        val shardLimit = maxConcurrency.coerceAtMost(MAX_REQUESTS_PER_SHARD)
+
+        // Calls are started shard after shard so the permits are handed out grouped by host
+        val outcomes = coroutineScope {
+            factors.withIndex().groupBy { it.value.shard }.values.flatMap { shardFactors ->
+                val shardPermits = Semaphore(shardLimit)
+                shardFactors.map { (index, factor) ->
+                    async {
+                        shardPermits.withPermit {
+                            permits.withPermit {
+                                IndexedValue(index, metrics.measure(MfaOperation.REFRESH_FACTOR) { refresh(factor) })
+                            }
+                        }
+                    }
+                }
+            }.awaitAll().sortedBy { it.index }.map { it.value }
+        }
+
+        val results = RefreshFactorsSuccess()
+        for ((factor, outcome) in outcomes) {
+            when (outcome) {
+                Outcome.UNPAIRED -> {
+                    results.unpairedCount++
+                    results.unpairedFactors.add(factor)
+                }
+                Outcome.UPDATED -> {
+                    results.updatedCount++
+                    results.updatedFactors.add(factor)
+                }
+                Outcome.UNCHANGED -> Unit
+            }
+        }
+
+        factorManager.applyRefresh(results.unpairedFactors, results.updatedFactors)
+        results
+    }
+
+    private suspend fun refresh(factor: Factor): Pair<Factor, Outcome> {
+        val settingsResponse = deviceManager.checkDeviceSettings(factor)
+
+        if (!settingsResponse.isSuccess || settingsResponse.unpaired) {
+            factor.paired = false
+            return factor to Outcome.UNPAIRED
+        }
+
+        val settings = settingsResponse.settings
+        if (settings.disallowJailbrokenOrRooted == factor.allowRoot ||
+            settings.forceLockProtection != factor.forceLock ||
+            settings.biometricVerification != factor.requireBiometrics
+        ) {
+            factor.allowRoot = settings.disallowJailbrokenOrRooted == false
+            factor.forceLock = settings.forceLockProtection == true
+            factor.requireBiometrics = settings.biometricVerification
+            return factor to Outcome.UPDATED
+        }
+
+        return factor to Outcome.UNCHANGED
+    }
+
+    private enum class Outcome {
+        UNPAIRED,
+        UPDATED,
+        UNCHANGED
+    }
+
+    companion object {
+        const val DEFAULT_MAX_CONCURRENCY = 5
+        private const val MAX_REQUESTS_PER_SHARD = 5
+        private const val ONELOGIN_ISSUER = "OneLogin"
+    }
+}
@@ -0,0 +1,57 @@
+package com.onelogin.mfa.data.factor
+
+import android.os.SystemClock
+import java.util.*
+
+/**
+ * Remembers whether a subdomain belongs to an existing OneLogin account, so registering several
+ * factors by web login on the same subdomain verifies it once. Valid subdomains are kept for
+ * [ttlMillis] and invalid ones for [invalidTtlMillis], which is shorter since a subdomain can be
+ * claimed at any time. Failed verifications are never cached.
+ */
+internal class SubdomainCache(
+    private val ttlMillis: Long = DEFAULT_TTL_MILLIS,
+    private val invalidTtlMillis: Long = DEFAULT_INVALID_TTL_MILLIS,
+    private val getTime: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+
+    private class Entry(val isValid: Boolean, val storedAt: Long)
+
+    private val entries = HashMap<String, Entry>()
+
+    /**
+     * @return Returns whether [subdomain] was last verified as valid, or null if it was not
+     * verified or the result expired
+     */
+    @Synchronized
+    fun isValid(subdomain: String): Boolean? {
+        val key = normalize(subdomain)
+        val entry = entries[key] ?: return null
+        val ttl = if (entry.isValid) ttlMillis else invalidTtlMillis
+        if (getTime() - entry.storedAt !in 0 until ttl) {
+            entries.remove(key)
+            return null
+        }
+        return entry.isValid
+    }
+
+    @Synchronized
+    fun put(subdomain: String, isValid: Boolean) {
+        val ttl = if (isValid) ttlMillis else invalidTtlMillis
+        if (ttl > 0) {
+            entries[normalize(subdomain)] = Entry(isValid, getTime())
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+    }
+
+    private fun normalize(subdomain: String): String = subdomain.trim().toLowerCase(Locale.ROOT)
+
+    companion object {
+        const val DEFAULT_TTL_MILLIS = 60 * 60 * 1000L
+        const val DEFAULT_INVALID_TTL_MILLIS = 5 * 60 * 1000L
+    }
+}
@@ -1,61 +1,64 @@
 package com.onelogin.mfa.data.factor
 
+import com.onelogin.mfa.OneLoginMfa
 import com.onelogin.mfa.data.OneLoginMfaException
 import com.onelogin.mfa.data.api.*
 import com.onelogin.mfa.data.factor.FactorManagerImpl.Companion.PROTECT_FACTOR_ID
 import com.onelogin.mfa.data.factor.FactorManagerImpl.Companion.PROTECT_FACTOR_NAME
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.data.network.NetworkResponse
 import com.onelogin.mfa.data.network.NetworkUtils.apiCall
 import com.onelogin.mfa.data.network.NetworkResponse.Success
 import com.onelogin.mfa.data.network.NetworkResponse.GenericException
 import com.onelogin.mfa.data.network.NetworkResponse.NetworkException
+import com.onelogin.mfa.model.MfaOperation
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
 
 internal class WebLoginHelper(
     private val subdomainApiService: SubdomainApiService,
-    private val dispatcher: CoroutineDispatcher = Dispatchers.IO
+    private val dispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val subdomainCache: SubdomainCache = SubdomainCache(),
+    private val metrics: MetricsRecorder = OneLoginMfa.metrics
 ) {
 
-    private lateinit var subdomain: String
-    private lateinit var username: String
-    private lateinit var password: String
-
-    private lateinit var usernameJwt: String
-    private lateinit var passwordJwt: String
-    private lateinit var registrationNoticeJwt: String
-    private lateinit var authorizationJwt: String
-    private lateinit var availableFactorsJwt: String
-
     suspend fun register(subdomain: String, username: String, password: String): String {
         if (subdomain.isBlank() || username.isBlank() || password.isBlank()) {
             throw OneLoginMfaException("Empty web login fields")
         }
 
-        this.subdomain = subdomain
-        this.username = username
-        this.password = password
+        val session = WebLoginSession(subdomain, username, password)
 
-        val isDomainAvailable = verifySubdomain().data
-        if (isDomainAvailable.isEmpty() || isDomainAvailable[0].subdomainAvailable) {
+        val isSubdomainValid = subdomainCache.isValid(subdomain)
+        if (isSubdomainValid == false) {
             throw OneLoginMfaException("Invalid subdomain")
         }
 
-        val initialAuthorization = getInitialAuthorization()
-        usernameJwt = initialAuthorization.context.jwt
+        // Verifying the subdomain does not depend on the authorization, both requests run together
+        val initialAuthorization = coroutineScope {
+            val initialAuthorizationResponse = async { requestInitialAuthorization(session) }
+            if (isSubdomainValid == null && !verifySubdomain(session)) {
+                throw OneLoginMfaException("Invalid subdomain")
+            }
+            getInitialAuthorization(initialAuthorizationResponse.await())
+        }
+        val usernameJwt = initialAuthorization.context.jwt
 
-        val uploadUsername = uploadUsername()
-        passwordJwt = uploadUsername.context.jwt
+        val uploadUsername = uploadUsername(session, usernameJwt)
+        val passwordJwt = uploadUsername.context.jwt
 
-        val uploadPassword = uploadPassword()
-        registrationNoticeJwt = uploadPassword.context.jwt
+        val uploadPassword = uploadPassword(session, passwordJwt)
+        val registrationNoticeJwt = uploadPassword.context.jwt
 
-        val mfaRegistrationNotice = getMfaRegistrationNotice()
-        authorizationJwt = mfaRegistrationNotice.mfa?.jwt ?: ""
+        val mfaRegistrationNotice = getMfaRegistrationNotice(session, registrationNoticeJwt)
+        val authorizationJwt = mfaRegistrationNotice.mfa?.jwt ?: ""
 
-        val mfaAuthorization = getMfaAuthorization()
-        availableFactorsJwt = mfaAuthorization.jwt
+        val mfaAuthorization = getMfaAuthorization(session, authorizationJwt)
+        val availableFactorsJwt = mfaAuthorization.jwt
 
-        val availableFactors = getAvailableFactors()
+        val availableFactors = getAvailableFactors(session, availableFactorsJwt)
         if (availableFactors.isEmpty()) {
             throw OneLoginMfaException("OneLogin Protect must be an available factor")
         }
@@ -65,7 +68,7 @@ internal class WebLoginHelper(
                 it.type_id == PROTECT_FACTOR_ID && it.name.contains(PROTECT_FACTOR_NAME, ignoreCase = true)
             }?.id ?: throw OneLoginMfaException("OneLogin Protect must be an available factor")
 
-        val factorToken = getFactorToken(factorId).verificationToken
+        val factorToken = getFactorToken(session, factorId, availableFactorsJwt).verificationToken
 
         if (factorToken.isNullOrBlank()) {
             throw OneLoginMfaException("Empty factor token")
@@ -73,13 +76,22 @@ internal class WebLoginHelper(
         return factorToken
     }
 
-    private suspend fun verifySubdomain(): DomainAvailableResponse {
-       val domainAvailableResponse = apiCall(dispatcher) {
-           subdomainApiService.isDomainAvailable(subdomain)
+    private suspend fun verifySubdomain(session: WebLoginSession): Boolean {
+       val domainAvailableResponse = measuredCall(MfaOperation.WEB_LOGIN_VERIFY_SUBDOMAIN) {
+           subdomainApiService.isDomainAvailable(session.subdomain)
        }
 
         when(domainAvailableResponse) {
-            is Success -> return domainAvailableResponse.value
+            is Success -> {
+                val isDomainAvailable = domainAvailableResponse.value.data
+                if (isDomainAvailable.isEmpty()) {
+                    return false
+                }
+                // A subdomain still available has no account behind it
+                val isValid = !isDomainAvailable[0].subdomainAvailable
+                subdomainCache.put(session.subdomain, isValid)
+                return isValid
+            }
             is NetworkException -> {
                 throw OneLoginMfaException(
                     domainAvailableResponse.errorResponse?.error,
@@ -97,11 +109,14 @@ internal class WebLoginHelper(
         }
     }
 
-    private suspend fun getInitialAuthorization(): AccessServiceResponse {
-        val initialAuthorizationResponse = apiCall(dispatcher) {
-            subdomainApiService.getInitialAuthorization(InitialAuthorizationRequest(""), subdomain)
+    private suspend fun requestInitialAuthorization(session: WebLoginSession): NetworkResponse<AccessServiceResponse> =
+        measuredCall(MfaOperation.WEB_LOGIN_INITIAL_AUTHORIZATION) {
+            subdomainApiService.getInitialAuthorization(InitialAuthorizationRequest(""), session.subdomain)
         }
 
+    private fun getInitialAuthorization(
+        initialAuthorizationResponse: NetworkResponse<AccessServiceResponse>
+    ): AccessServiceResponse {
         when (initialAuthorizationResponse) {
             is Success -> return initialAuthorizationResponse.value
             is NetworkException -> {
@@ -121,10 +136,10 @@ internal class WebLoginHelper(
         }
     }
 
-    private suspend fun uploadUsername(): AccessServiceResponse {
-        val uploadUsernameResponse = apiCall(dispatcher) {
-            val payload = UploadUsernameRequest(UploadUsernameVariables(username))
-            subdomainApiService.uploadUsername(payload = payload, domain = subdomain, jwt = usernameJwt)
+    private suspend fun uploadUsername(session: WebLoginSession, jwt: String): AccessServiceResponse {
+        val uploadUsernameResponse = measuredCall(MfaOperation.WEB_LOGIN_UPLOAD_USERNAME) {
+            val payload = UploadUsernameRequest(UploadUsernameVariables(session.username))
+            subdomainApiService.uploadUsername(payload = payload, domain = session.subdomain, jwt = jwt)
         }
 
         when (uploadUsernameResponse) {
@@ -146,10 +161,10 @@ internal class WebLoginHelper(
         }
     }
 
-    private suspend fun uploadPassword(): AccessServiceResponse {
-        val uploadPasswordResponse = apiCall(dispatcher) {
-            val payload = UploadPasswordRequest(UploadPasswordVariables(password))
-            subdomainApiService.uploadPassword(payload = payload, domain = subdomain, jwt = passwordJwt)
+    private suspend fun uploadPassword(session: WebLoginSession, jwt: String): AccessServiceResponse {
+        val uploadPasswordResponse = measuredCall(MfaOperation.WEB_LOGIN_UPLOAD_PASSWORD) {
+            val payload = UploadPasswordRequest(UploadPasswordVariables(session.password))
+            subdomainApiService.uploadPassword(payload = payload, domain = session.subdomain, jwt = jwt)
         }
 
         when (uploadPasswordResponse) {
@@ -171,10 +186,10 @@ internal class WebLoginHelper(
         }
     }
 
-    private suspend fun getMfaRegistrationNotice(): AccessServiceResponse {
-        val mfaRegistrationResponse = apiCall(dispatcher) {
+    private suspend fun getMfaRegistrationNotice(session: WebLoginSession, jwt: String): AccessServiceResponse {
+        val mfaRegistrationResponse = measuredCall(MfaOperation.WEB_LOGIN_REGISTRATION_NOTICE) {
             val payload = GetMfaRegistrationNoticeRequest(GetMfaRegistrationNoticeVariables())
-            subdomainApiService.getMfaRegistrationNotice(payload = payload, domain = subdomain, jwt = registrationNoticeJwt)
+            subdomainApiService.getMfaRegistrationNotice(payload = payload, domain = session.subdomain, jwt = jwt)
         }
 
         when (mfaRegistrationResponse) {
@@ -196,9 +211,9 @@ internal class WebLoginHelper(
         }
     }
 
-    private suspend fun getMfaAuthorization(): AccessServiceMfa  {
-        val mfaAuthorizationResponse = apiCall(dispatcher) {
-            subdomainApiService.getMfaAuthorization(subdomain, jwt = authorizationJwt)
+    private suspend fun getMfaAuthorization(session: WebLoginSession, jwt: String): AccessServiceMfa  {
+        val mfaAuthorizationResponse = measuredCall(MfaOperation.WEB_LOGIN_MFA_AUTHORIZATION) {
+            subdomainApiService.getMfaAuthorization(session.subdomain, jwt = jwt)
         }
 
         when (mfaAuthorizationResponse) {
@@ -220,9 +235,9 @@ internal class WebLoginHelper(
         }
     }
 
-    private suspend fun getAvailableFactors(): List<AvailableFactors> {
-        val availableFactorsResponse = apiCall(dispatcher) {
-            subdomainApiService.getAvailableFactors(subdomain, jwt = availableFactorsJwt)
+    private suspend fun getAvailableFactors(session: WebLoginSession, jwt: String): List<AvailableFactors> {
+        val availableFactorsResponse = measuredCall(MfaOperation.WEB_LOGIN_AVAILABLE_FACTORS) {
+            subdomainApiService.getAvailableFactors(session.subdomain, jwt = jwt)
         }
 
         when (availableFactorsResponse) {
@@ -245,9 +260,9 @@ internal class WebLoginHelper(
     }
 
 
-    private suspend fun getFactorToken(factorId: Int): GetMfaTokenResponse {
-        val factorTokenResponse = apiCall(dispatcher) {
-            subdomainApiService.getFactorToken(factorId, subdomain, jwt = availableFactorsJwt)
+    private suspend fun getFactorToken(session: WebLoginSession, factorId: Int, jwt: String): GetMfaTokenResponse {
+        val factorTokenResponse = measuredCall(MfaOperation.WEB_LOGIN_FACTOR_TOKEN) {
+            subdomainApiService.getFactorToken(factorId, session.subdomain, jwt = jwt)
         }
 
         when (factorTokenResponse) {
@@ -268,4 +283,7 @@ internal class WebLoginHelper(
             else -> throw OneLoginMfaException("Failed to retrieve factor token")
         }
     }
+
+    private suspend fun <T> measuredCall(operation: MfaOperation, call: suspend () -> T): NetworkResponse<T> =
+        metrics.measure<NetworkResponse<T>>(operation, { it is Success }) { apiCall(dispatcher, call) }
 }
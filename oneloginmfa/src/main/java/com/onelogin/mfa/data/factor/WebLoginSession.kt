@@ -0,0 +1,16 @@
+package com.onelogin.mfa.data.factor
+
+/**
+ * Credentials of a single web login registration. It is created for each call of
+ * [WebLoginHelper.register] and never modified, the JWTs returned by each step are passed to the
+ * next one instead, so registrations can run concurrently on the same [WebLoginHelper].
+ */
+internal data class WebLoginSession(
+    val subdomain: String,
+    val username: String,
+    val password: String
+) {
+
+    override fun toString(): String =
+        "WebLoginSession(subdomain=$subdomain, username=$username, password=***)"
+}
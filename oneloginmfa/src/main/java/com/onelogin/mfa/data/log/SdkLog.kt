@@ -0,0 +1,69 @@
+package com.onelogin.mfa.data.log
+
+import android.util.Log
+import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.MfaLogCategory
+import timber.log.Timber
+
+/**
+ * Logging of the SDK, forwarded to Timber with a tag per [MfaLogCategory]. Messages are built by a
+ * lambda which only runs when the level of its category is enabled, so a disabled statement costs a
+ * single array read and never formats its arguments.
+ *
+ * Messages must describe factors with [describe] rather than their `toString()`, which includes the
+ * seed. Anything formatted like `seed=`, `secret=`, `password=` or `jwt=` is redacted anyway before
+ * reaching Timber.
+ */
+internal object SdkLog {
+
+    @Volatile
+    private var levels = IntArray(MfaLogCategory.values().size) { DEFAULT_LEVEL }
+
+    /**
+     * @param defaultLevel Minimum priority, as in [Log], of the categories missing from [levels]
+     */
+    fun configure(defaultLevel: Int, levels: Map<MfaLogCategory, Int> = emptyMap()) {
+        this.levels = IntArray(MfaLogCategory.values().size) {
+            levels[MfaLogCategory.values()[it]] ?: defaultLevel
+        }
+    }
+
+    fun isLoggable(category: MfaLogCategory, priority: Int): Boolean =
+        priority >= levels[category.ordinal]
+
+    inline fun d(category: MfaLogCategory, message: () -> String) =
+        log(Log.DEBUG, category, null, message)
+
+    inline fun w(category: MfaLogCategory, throwable: Throwable? = null, message: () -> String) =
+        log(Log.WARN, category, throwable, message)
+
+    inline fun e(category: MfaLogCategory, throwable: Throwable? = null, message: () -> String) =
+        log(Log.ERROR, category, throwable, message)
+
+    inline fun log(priority: Int, category: MfaLogCategory, throwable: Throwable?, message: () -> String) {
+        if (isLoggable(category, priority)) {
+            emit(priority, category, throwable, message())
+        }
+    }
+
+    fun emit(priority: Int, category: MfaLogCategory, throwable: Throwable?, message: String) {
+        Timber.tag(TAG_PREFIX + category.name).log(priority, throwable, redact(message))
+    }
+
+    fun redact(message: String): String = SECRET_PATTERN.replace(message, "$1=***")
+
+    /**
+     * Identify [factor] without any of its secrets or personal data.
+     */
+    fun describe(factor: Factor?): String =
+        if (factor == null) "no factor" else "factor ${factor.id} (issuer ${factor.issuer})"
+
+    /**
+     * Summarize [factors], which are never listed one by one.
+     */
+    fun describe(factors: List<Factor>): String = "${factors.size} factors"
+
+    private const val TAG_PREFIX = "OneLoginMfa/"
+    private const val DEFAULT_LEVEL = Log.WARN
+    private val SECRET_PATTERN = Regex("(?i)\\b(seed|secret|password|jwt)=[^,&)\\s]*")
+}
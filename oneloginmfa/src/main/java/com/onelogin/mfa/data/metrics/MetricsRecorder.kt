@@ -0,0 +1,133 @@
+package com.onelogin.mfa.data.metrics
+
+import com.onelogin.mfa.MfaMetricsListener
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.model.MfaLogCategory
+import com.onelogin.mfa.model.MfaOperation
+import com.onelogin.mfa.model.OperationStats
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Keeps counters and a latency histogram per [MfaOperation] and forwards every measurement to the
+ * registered [MfaMetricsListener]. Recording is lock free, so it can be used on hot paths like OTP
+ * generation, and costs a single volatile read while disabled.
+ */
+internal class MetricsRecorder(
+    private val getTime: () -> Long = { System.nanoTime() }
+) {
+
+    @Volatile
+    var isEnabled: Boolean = false
+        private set
+
+    @Volatile
+    private var listener: MfaMetricsListener? = null
+
+    private val operations = Array(MfaOperation.values().size) { OperationRecorder() }
+
+    fun configure(enabled: Boolean, listener: MfaMetricsListener?) {
+        this.listener = listener
+        isEnabled = enabled || listener != null
+    }
+
+    inline fun <T> measure(operation: MfaOperation, block: () -> T): T =
+        measure(operation, { true }, block)
+
+    /**
+     * Measure [block], which is considered failed when it throws or [isSuccess] returns false for
+     * its result.
+     */
+    inline fun <T> measure(operation: MfaOperation, isSuccess: (T) -> Boolean, block: () -> T): T {
+        if (!isEnabled) {
+            return block()
+        }
+
+        val start = now()
+        var success = false
+        try {
+            return block().also { success = isSuccess(it) }
+        } finally {
+            record(operation, now() - start, success)
+        }
+    }
+
+    fun now(): Long = getTime()
+
+    fun record(operation: MfaOperation, durationNanos: Long, success: Boolean) {
+        if (!isEnabled) {
+            return
+        }
+
+        operations[operation.ordinal].record(durationNanos.coerceAtLeast(0), success)
+        try {
+            listener?.onOperation(operation, durationNanos, success)
+        } catch (e: Exception) {
+            SdkLog.e(MfaLogCategory.CLIENT, e) { "Metrics listener failed for $operation" }
+        }
+    }
+
+    fun getStats(): List<OperationStats> =
+        MfaOperation.values().map { operations[it.ordinal].snapshot(it) }
+
+    fun reset() {
+        operations.forEach { it.reset() }
+    }
+
+    private class OperationRecorder {
+        private val count = AtomicLong()
+        private val failures = AtomicLong()
+        private val totalNanos = AtomicLong()
+        private val maxNanos = AtomicLong()
+        private val buckets = AtomicLongArray(BUCKET_UPPER_BOUNDS_NANOS.size + 1)
+
+        fun record(durationNanos: Long, success: Boolean) {
+            count.incrementAndGet()
+            if (!success) {
+                failures.incrementAndGet()
+            }
+            totalNanos.addAndGet(durationNanos)
+
+            var max = maxNanos.get()
+            while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+                max = maxNanos.get()
+            }
+
+            var bucket = BUCKET_UPPER_BOUNDS_NANOS.binarySearch(durationNanos)
+            if (bucket < 0) {
+                bucket = -bucket - 1
+            }
+            buckets.incrementAndGet(bucket)
+        }
+
+        fun snapshot(operation: MfaOperation) = OperationStats(
+            operation,
+            count.get(),
+            failures.get(),
+            totalNanos.get(),
+            maxNanos.get(),
+            BUCKET_UPPER_BOUNDS_NANOS.asList(),
+            List(buckets.length()) { buckets.get(it) }
+        )
+
+        fun reset() {
+            count.set(0)
+            failures.set(0)
+            totalNanos.set(0)
+            maxNanos.set(0)
+            for (i in 0 until buckets.length()) {
+                buckets.set(i, 0)
+            }
+        }
+    }
+
+    companion object {
+        // From 50 µs for OTP generation and decryption up to 10 s for network calls
+        private val BUCKET_UPPER_BOUNDS_NANOS = longArrayOf(
+            50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+        )
+    }
+}
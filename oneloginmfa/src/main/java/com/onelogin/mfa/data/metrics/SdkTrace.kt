@@ -0,0 +1,61 @@
+package com.onelogin.mfa.data.metrics
+
+import androidx.core.os.TraceCompat
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Named sections shown by systrace and Perfetto around the SDK hot paths, only emitted when
+ * enabled in [com.onelogin.mfa.MfaConfiguration]. While disabled a section costs a single volatile
+ * read, names built from arguments must be built inside [isEnabled] checks.
+ */
+internal object SdkTrace {
+
+    @Volatile
+    var isEnabled: Boolean = false
+
+    private val cookies = AtomicInteger()
+
+    /**
+     * Trace [block] on the calling thread. [block] must not suspend, since a section has to end on
+     * the thread which started it.
+     */
+    inline fun <T> section(name: String, block: () -> T): T {
+        if (!isEnabled) {
+            return block()
+        }
+
+        TraceCompat.beginSection(sectionName(name))
+        try {
+            return block()
+        } finally {
+            TraceCompat.endSection()
+        }
+    }
+
+    /**
+     * Trace [block] as an async slice, which may start and end on different threads, e.g. around
+     * suspending work.
+     */
+    inline fun <T> asyncSection(name: String, block: () -> T): T {
+        if (!isEnabled) {
+            return block()
+        }
+
+        val sectionName = sectionName(name)
+        val cookie = nextCookie()
+        TraceCompat.beginAsyncSection(sectionName, cookie)
+        try {
+            return block()
+        } finally {
+            TraceCompat.endAsyncSection(sectionName, cookie)
+        }
+    }
+
+    fun nextCookie(): Int = cookies.incrementAndGet()
+
+    // Section names longer than 127 characters are rejected by the platform
+    fun sectionName(name: String): String = (PREFIX + name).take(MAX_SECTION_NAME_LENGTH)
+
+    private const val PREFIX = "OneLoginMfa:"
+    private const val MAX_SECTION_NAME_LENGTH = 127
+}
@@ -0,0 +1,139 @@
+package com.onelogin.mfa.data.network
+
+import com.onelogin.mfa.model.ServiceState
+import java.io.IOException
+
+/**
+ * Circuit breaker of a single host. After [failureThreshold] consecutive failed or slow calls the
+ * circuit opens and calls fail fast with [CircuitBreakerOpenException] for [openDurationMillis].
+ * The circuit is then half-open: up to [maxProbes] calls are let through, the first result closes
+ * the circuit again or opens it for another [openDurationMillis].
+ *
+ * A call counts as slow, and so as failed, when it takes [slowCallThresholdMillis] or more.
+ */
+internal class CircuitBreaker(
+    val host: String,
+    private val failureThreshold: Int = DEFAULT_FAILURE_THRESHOLD,
+    private val openDurationMillis: Long = DEFAULT_OPEN_DURATION_MILLIS,
+    private val slowCallThresholdMillis: Long = DEFAULT_SLOW_CALL_THRESHOLD_MILLIS,
+    private val maxProbes: Int = DEFAULT_MAX_PROBES,
+    private val getTime: () -> Long,
+    private val onStateChanged: (CircuitBreaker) -> Unit = {}
+) {
+
+    enum class State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Granted by [tryAcquire] for a single call, hand it back to [onResult] or [release].
+     */
+    class Permit internal constructor(internal val isProbe: Boolean, internal val startedAt: Long)
+
+    @Volatile
+    var state: State = State.CLOSED
+        private set
+
+    private var consecutiveFailures = 0
+    private var openedAt = 0L
+    private var probesInFlight = 0
+
+    val serviceState: ServiceState
+        get() = when (state) {
+            State.CLOSED -> ServiceState.AVAILABLE
+            State.HALF_OPEN -> ServiceState.DEGRADED
+            State.OPEN -> ServiceState.UNAVAILABLE
+        }
+
+    /**
+     * @return Returns a permit to make the call, or null if the call must fail fast
+     */
+    @Synchronized
+    fun tryAcquire(): Permit? {
+        val now = getTime()
+        if (state == State.OPEN) {
+            if (now - openedAt < openDurationMillis) {
+                return null
+            }
+            probesInFlight = 0
+            setState(State.HALF_OPEN)
+        }
+
+        if (state == State.CLOSED) {
+            return Permit(false, now)
+        }
+
+        if (probesInFlight >= maxProbes) {
+            return null
+        }
+        probesInFlight++
+        return Permit(true, now)
+    }
+
+    /**
+     * Record the result of a call made with [permit].
+     *
+     * @param success Whether the host answered properly, whatever the status of the answer
+     */
+    @Synchronized
+    fun onResult(permit: Permit, success: Boolean) {
+        val failed = !success || getTime() - permit.startedAt >= slowCallThresholdMillis
+
+        if (permit.isProbe) {
+            probesInFlight = (probesInFlight - 1).coerceAtLeast(0)
+            if (state == State.HALF_OPEN) {
+                if (failed) open() else close()
+            }
+            return
+        }
+
+        if (!failed) {
+            consecutiveFailures = 0
+        } else if (++consecutiveFailures >= failureThreshold && state == State.CLOSED) {
+            open()
+        }
+    }
+
+    /**
+     * Give back a [permit] whose call ended without telling anything about the host, e.g. because
+     * it was cancelled.
+     */
+    @Synchronized
+    fun release(permit: Permit) {
+        if (permit.isProbe) {
+            probesInFlight = (probesInFlight - 1).coerceAtLeast(0)
+        }
+    }
+
+    private fun open() {
+        openedAt = getTime()
+        setState(State.OPEN)
+    }
+
+    private fun close() {
+        consecutiveFailures = 0
+        setState(State.CLOSED)
+    }
+
+    private fun setState(state: State) {
+        if (this.state != state) {
+            this.state = state
+            onStateChanged(this)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_FAILURE_THRESHOLD = 5
+        const val DEFAULT_OPEN_DURATION_MILLIS = 30_000L
+        const val DEFAULT_SLOW_CALL_THRESHOLD_MILLIS = 15_000L
+        const val DEFAULT_MAX_PROBES = 1
+    }
+}
+
+/**
+ * Thrown instead of making a call while the circuit of its host is open.
+ */
+internal class CircuitBreakerOpenException(host: String) :
+    IOException("$host is unavailable, the call was not attempted")
@@ -0,0 +1,39 @@
+package com.onelogin.mfa.data.network
+
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.IOException
+
+/**
+ * Fails calls fast while the circuit of their host is open, and reports the outcome of the others
+ * to the circuit. Must be added after the interceptors resolving the host, and after
+ * [RetryInterceptor] so every attempt is accounted for.
+ */
+internal class CircuitBreakerInterceptor(private val circuitBreakers: CircuitBreakerRegistry) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val circuitBreaker = circuitBreakers.get(request.url.host)
+        val permit = circuitBreaker.tryAcquire() ?: throw CircuitBreakerOpenException(request.url.host)
+
+        // Every permit is settled, also when the call ends with an unexpected exception, otherwise
+        // a half-open circuit would run out of probes for good
+        var success: Boolean? = null
+        try {
+            val response = chain.proceed(request)
+            success = response.code < 500
+            return response
+        } catch (e: IOException) {
+            if (!chain.call().isCanceled()) {
+                success = false
+            }
+            throw e
+        } finally {
+            if (success != null) {
+                circuitBreaker.onResult(permit, success)
+            } else {
+                circuitBreaker.release(permit)
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.onelogin.mfa.data.network
+
+import android.os.SystemClock
+import com.onelogin.mfa.model.ServiceState
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+
+/**
+ * Creates one [CircuitBreaker] per resolved host and publishes the state of all of them.
+ */
+internal class CircuitBreakerRegistry(
+    private val getTime: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+
+    private val breakers = HashMap<String, CircuitBreaker>()
+    private val mutableStates = MutableStateFlow<Map<String, ServiceState>>(emptyMap())
+
+    /**
+     * State of every host called so far, keyed by host.
+     */
+    val states: StateFlow<Map<String, ServiceState>> = mutableStates
+
+    @Synchronized
+    fun get(host: String): CircuitBreaker = breakers[host] ?: CircuitBreaker(
+        host,
+        getTime = getTime,
+        onStateChanged = { publish() }
+    ).also {
+        breakers[host] = it
+        publish()
+    }
+
+    @Synchronized
+    private fun publish() {
+        mutableStates.value = breakers.mapValues { it.value.serviceState }
+    }
+}
@@ -0,0 +1,89 @@
+package com.onelogin.mfa.data.network
+
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.internal.http.toHttpDateOrNull
+import java.io.IOException
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Retries only failures that may go away on their own: I/O errors, 5xx responses and 429 responses
+ * carrying a Retry-After delay, either in seconds or as an HTTP date. A Retry-After delay is capped at
+ * [maxDelayMillis]. Any other 4xx, including the 404 of an unpaired factor, is returned right away.
+ *
+ * Calls refused by an open [CircuitBreaker] are not retried either.
+ *
+ * Only idempotent requests are retried. The device registration POST consumes a one-time code, so
+ * sending it again after a lost response would fail even though the first attempt succeeded.
+ * Attempts are spaced with an exponential backoff and jitter, a retry is only made if it can start
+ * within [callDeadlineMillis] of the first attempt and [budget] allows it.
+ */
+internal class ExponentialBackoffRetryPolicy(
+    private val maxRetries: Int = DEFAULT_MAX_RETRIES,
+    private val baseDelayMillis: Long = DEFAULT_BASE_DELAY_MILLIS,
+    private val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS,
+    private val callDeadlineMillis: Long = DEFAULT_CALL_DEADLINE_MILLIS,
+    private val budget: RetryBudget = RetryBudget(),
+    private val random: Random = Random(),
+    private val getTime: () -> Long = { System.currentTimeMillis() }
+) : RetryPolicy {
+
+    override fun getRetryDelay(
+        request: Request,
+        response: Response?,
+        error: IOException?,
+        attempt: Int,
+        elapsedMillis: Long
+    ): Long? {
+        if (attempt == 1) {
+            budget.onCall()
+        }
+
+        if (attempt > maxRetries || error is CircuitBreakerOpenException || !isRetryable(request)) {
+            return null
+        }
+
+        val delay = when {
+            error != null -> getBackoffDelay(attempt)
+            response == null || response.isSuccessful -> return null
+            response.code == HTTP_TOO_MANY_REQUESTS -> getRetryAfterDelay(response) ?: return null
+            response.code >= 500 -> getBackoffDelay(attempt)
+            else -> return null
+        }
+
+        if (elapsedMillis + delay > callDeadlineMillis || !budget.tryWithdraw()) {
+            return null
+        }
+        return delay
+    }
+
+    private fun isRetryable(request: Request): Boolean = request.method in IDEMPOTENT_METHODS
+
+    private fun getBackoffDelay(attempt: Int): Long {
+        val backoff = (baseDelayMillis shl (attempt - 1).coerceAtMost(MAX_SHIFT)).coerceAtMost(maxDelayMillis)
+        // Half of the backoff is fixed and the other half random, so clients failing together
+        // spread their retries without retrying immediately
+        return backoff / 2 + (random.nextDouble() * (backoff / 2)).toLong()
+    }
+
+    private fun getRetryAfterDelay(response: Response): Long? {
+        val retryAfter = response.header(RETRY_AFTER)?.trim() ?: return null
+        val delay = retryAfter.toLongOrNull()?.takeIf { it >= 0 }?.let { TimeUnit.SECONDS.toMillis(it) }
+            ?: retryAfter.toHttpDateOrNull()?.let { (it.time - getTime()).coerceAtLeast(0) }
+            ?: return null
+        return delay.coerceAtMost(maxDelayMillis)
+    }
+
+    companion object {
+        const val DEFAULT_MAX_RETRIES = 3
+        const val DEFAULT_BASE_DELAY_MILLIS = 250L
+        const val DEFAULT_MAX_DELAY_MILLIS = 4000L
+        const val DEFAULT_CALL_DEADLINE_MILLIS = 30_000L
+
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+        private const val RETRY_AFTER = "Retry-After"
+        private const val MAX_SHIFT = 16
+        private val IDEMPOTENT_METHODS = setOf("GET", "HEAD", "OPTIONS", "PUT", "DELETE")
+    }
+}
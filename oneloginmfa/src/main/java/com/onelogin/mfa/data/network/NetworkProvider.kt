@@ -4,26 +4,47 @@ import android.content.Context
 import com.onelogin.mfa.data.api.OneLoginApiService
 import com.onelogin.mfa.data.api.SubdomainApiService
 import okhttp3.Cache
+import okhttp3.Call
 import okhttp3.Interceptor
 import okhttp3.OkHttpClient
-import okhttp3.logging.HttpLoggingInterceptor
+import okhttp3.Request
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
-import timber.log.Timber
+import java.io.File
 import java.util.concurrent.TimeUnit
 
 internal object NetworkProvider {
 
+    // Every API client is derived from this one, so they all share the dispatcher, the connection
+    // pool and the disk cache. OkHttp does not support two caches on the same directory.
+    @Volatile
+    private var rootClient: OkHttpClient? = null
+
+    private val converterFactory: GsonConverterFactory by lazy { GsonConverterFactory.create() }
+
+    // One policy, and so one retry budget, for all the calls to the OneLogin API
+    private val oneLoginRetryPolicy: RetryPolicy by lazy { ExponentialBackoffRetryPolicy() }
+
+    /**
+     * Circuit breakers of the OneLogin API hosts, shared by every client.
+     */
+    internal val oneLoginCircuitBreakers: CircuitBreakerRegistry by lazy { CircuitBreakerRegistry() }
+
     internal fun getOneLoginApi(context: Context): OneLoginApiService {
         val builder = Retrofit.Builder()
-            .client(
-                getOkHttpClient(
-                    context,
-                    OneLoginApiInterceptor()
-                )
+            .callFactory(
+                lazyCallFactory {
+                    getOkHttpClient(
+                        context,
+                        TraceInterceptor(),
+                        OneLoginApiInterceptor(),
+                        RetryInterceptor(oneLoginRetryPolicy),
+                        CircuitBreakerInterceptor(oneLoginCircuitBreakers)
+                    )
+                }
             )
             .baseUrl("https://api.onelogin.com")
-            .addConverterFactory(GsonConverterFactory.create())
+            .addConverterFactory(converterFactory)
             .build()
 
         return builder.create(OneLoginApiService::class.java)
@@ -31,25 +52,49 @@ internal object NetworkProvider {
 
     internal fun getSubdomainApi(context: Context): SubdomainApiService {
         val builder = Retrofit.Builder()
-            .client(
-                getOkHttpClient(
-                    context,
-                    SubdomainApiInterceptor()
-                )
+            .callFactory(
+                lazyCallFactory {
+                    getOkHttpClient(
+                        context,
+                        TraceInterceptor(),
+                        SubdomainApiInterceptor()
+                    )
+                }
             )
             .baseUrl("https://onelogininc.onelogin.com")
-            .addConverterFactory(GsonConverterFactory.create())
+            .addConverterFactory(converterFactory)
             .build()
 
         return builder.create(SubdomainApiService::class.java)
     }
 
-    private fun getOkHttpClient(context: Context, interceptor: Interceptor) = OkHttpClient.Builder()
-            .cache(Cache(context.cacheDir, 10 * 1024 * 1024))
-            .connectTimeout(60, TimeUnit.SECONDS)
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .followRedirects(false)
-            .addInterceptor(interceptor)
+    /**
+     * The OkHttp client, and with it the disk cache, is only built when the first call is made.
+     */
+    private fun lazyCallFactory(createClient: () -> OkHttpClient): Call.Factory {
+        val client by lazy(createClient)
+        return object : Call.Factory {
+            override fun newCall(request: Request): Call = client.newCall(request)
+        }
+    }
+
+    private fun getOkHttpClient(context: Context, vararg interceptors: Interceptor) = getRootClient(context)
+            .newBuilder()
+            .apply { interceptors.forEach { addInterceptor(it) } }
             .build()
+
+    private fun getRootClient(context: Context): OkHttpClient =
+        rootClient ?: synchronized(this) {
+            rootClient ?: OkHttpClient.Builder()
+                .cache(Cache(File(context.cacheDir, CACHE_DIRECTORY), CACHE_SIZE))
+                .connectTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .followRedirects(false)
+                .build()
+                .also { rootClient = it }
+        }
+
+    private const val CACHE_DIRECTORY = "onelogin-mfa-http"
+    private const val CACHE_SIZE = 10L * 1024 * 1024
 }
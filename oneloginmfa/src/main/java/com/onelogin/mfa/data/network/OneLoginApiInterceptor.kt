@@ -39,15 +39,6 @@ internal class OneLoginApiInterceptor(
             .addHeader("User-Agent", NetworkUtils.userAgentString)
             .build()
 
-        var response =  chain.proceed(request)
-
-        var retries = 0
-        while (!response.isSuccessful && retries < 5) {
-            retries++
-            response.close()
-            response = chain.proceed(request)
-        }
-
-        return response
+        return chain.proceed(request)
     }
 }
\ No newline at end of file
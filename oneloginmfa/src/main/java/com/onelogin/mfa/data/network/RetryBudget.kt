@@ -0,0 +1,37 @@
+package com.onelogin.mfa.data.network
+
+/**
+ * Token bucket limiting retries to a fraction of the calls made, shared by all calls of a client,
+ * so a failing backend does not get several times its normal load from retries.
+ *
+ * Every call deposits [tokensPerCall] tokens, up to [maxTokens], and every retry withdraws one.
+ */
+internal class RetryBudget(
+    private val maxTokens: Double = DEFAULT_MAX_TOKENS,
+    private val tokensPerCall: Double = DEFAULT_TOKENS_PER_CALL
+) {
+
+    private var tokens = maxTokens
+
+    @Synchronized
+    fun onCall() {
+        tokens = (tokens + tokensPerCall).coerceAtMost(maxTokens)
+    }
+
+    /**
+     * @return Returns true if a retry may be made, in which case it has been withdrawn
+     */
+    @Synchronized
+    fun tryWithdraw(): Boolean {
+        if (tokens < 1.0) {
+            return false
+        }
+        tokens -= 1.0
+        return true
+    }
+
+    companion object {
+        const val DEFAULT_MAX_TOKENS = 10.0
+        const val DEFAULT_TOKENS_PER_CALL = 0.1
+    }
+}
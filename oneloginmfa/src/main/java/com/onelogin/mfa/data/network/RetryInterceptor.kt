@@ -0,0 +1,91 @@
+package com.onelogin.mfa.data.network
+
+import com.onelogin.mfa.OneLoginMfa
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.model.MfaLogCategory
+import com.onelogin.mfa.model.MfaOperation
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.io.IOException
+import java.io.InterruptedIOException
+
+/**
+ * Attempts a call again for as long as [retryPolicy] asks to, waiting the delay it returns between
+ * attempts. Must be added after the interceptors rewriting the request, so every attempt is sent to
+ * the same resolved host.
+ *
+ * A call canceled while waiting to retry is not attempted again and fails with an [IOException].
+ *
+ * Each failed attempt which is retried is reported as [MfaOperation.API_RETRY] and the whole call as
+ * [MfaOperation.API_CALL].
+ */
+internal class RetryInterceptor(
+    private val retryPolicy: RetryPolicy,
+    private val metrics: MetricsRecorder = OneLoginMfa.metrics
+) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val start = System.nanoTime()
+        var attempt = 0
+
+        while (true) {
+            attempt++
+            val attemptStart = System.nanoTime()
+            var response: Response? = null
+            var error: IOException? = null
+            try {
+                response = chain.proceed(request)
+            } catch (e: IOException) {
+                error = e
+            }
+
+            val elapsedMillis = (System.nanoTime() - start) / 1_000_000
+            val delay = if (chain.call().isCanceled()) {
+                null
+            } else {
+                retryPolicy.getRetryDelay(request, response, error, attempt, elapsedMillis)
+            }
+
+            if (delay == null) {
+                metrics.record(MfaOperation.API_CALL, System.nanoTime() - start, response?.isSuccessful == true)
+                return response ?: throw error!!
+            }
+
+            metrics.record(MfaOperation.API_RETRY, System.nanoTime() - attemptStart, false)
+
+            SdkLog.d(MfaLogCategory.NETWORK) {
+                "Retrying ${request.method} ${request.url.encodedPath} in $delay ms, attempt $attempt failed"
+            }
+            response?.close()
+            if (!waitToRetry(chain, delay)) {
+                metrics.record(MfaOperation.API_CALL, System.nanoTime() - start, false)
+                throw IOException("Canceled")
+            }
+        }
+    }
+
+    /**
+     * Waits [delay] in short slices so a cancellation is noticed, returns false if the call was
+     * canceled meanwhile.
+     */
+    private fun waitToRetry(chain: Interceptor.Chain, delay: Long): Boolean {
+        var remaining = delay
+        try {
+            while (remaining > 0 && !chain.call().isCanceled()) {
+                val slice = remaining.coerceAtMost(CANCEL_CHECK_INTERVAL_MILLIS)
+                Thread.sleep(slice)
+                remaining -= slice
+            }
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw InterruptedIOException("Interrupted while waiting to retry")
+        }
+        return !chain.call().isCanceled()
+    }
+
+    companion object {
+        private const val CANCEL_CHECK_INTERVAL_MILLIS = 50L
+    }
+}
@@ -0,0 +1,30 @@
+package com.onelogin.mfa.data.network
+
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+
+/**
+ * Decides whether a failed call is attempted again, see [RetryInterceptor].
+ */
+internal interface RetryPolicy {
+
+    /**
+     * Called after every attempt, successful or not.
+     *
+     * @param request Request that was attempted
+     * @param response Response of the attempt, null if it failed with [error]
+     * @param error Error of the attempt, null if a [response] was received
+     * @param attempt Number of attempts made so far, starting at 1
+     * @param elapsedMillis Time spent on the call since the first attempt
+     * @return Returns the delay in milliseconds before the next attempt, or null to stop and hand
+     * the last result to the caller
+     */
+    fun getRetryDelay(
+        request: Request,
+        response: Response?,
+        error: IOException?,
+        attempt: Int,
+        elapsedMillis: Long
+    ): Long?
+}
@@ -0,0 +1,23 @@
+package com.onelogin.mfa.data.network
+
+import com.onelogin.mfa.data.metrics.SdkTrace
+import okhttp3.Interceptor
+import okhttp3.Response
+
+/**
+ * Wraps each call in a trace section named after its method and path. Added first, so the section
+ * covers the retries and the time spent waiting for them.
+ */
+internal class TraceInterceptor : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        if (!SdkTrace.isEnabled) {
+            return chain.proceed(chain.request())
+        }
+
+        val request = chain.request()
+        return SdkTrace.section("${request.method} ${request.url.encodedPath}") {
+            chain.proceed(request)
+        }
+    }
+}
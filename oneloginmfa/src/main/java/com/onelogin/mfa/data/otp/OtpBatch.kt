@@ -0,0 +1,37 @@
+package com.onelogin.mfa.data.otp
+
+import com.onelogin.mfa.data.util.TimeProvider
+import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.OtpSnapshot
+
+/**
+ * Generates the OTPs of several factors from a single clock read, so every factor in a list is
+ * computed against the same time step.
+ */
+object OtpBatch {
+
+    /**
+     * Generate the current OTP, remaining time and period for every factor.
+     *
+     * @param factors Factors to generate OTPs for
+     * @param now Time in milliseconds used for every factor, defaults to the current time
+     * @return Returns one {@link com.onelogin.mfa.model.OtpSnapshot} per factor, in the same order
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun generate(factors: List<Factor>, now: Long = TimeProvider().invoke()): List<OtpSnapshot> {
+        val snapshots = ArrayList<OtpSnapshot>(factors.size)
+        for (factor in factors) {
+            val totpToken = factor.getTotpToken()
+            snapshots.add(
+                OtpSnapshot(
+                    factor = factor,
+                    otp = totpToken.generateOtp(now),
+                    remainingMillis = totpToken.getTimerInMillis(now),
+                    periodInMillis = totpToken.periodInMillis
+                )
+            )
+        }
+        return snapshots
+    }
+}
@@ -0,0 +1,155 @@
+package com.onelogin.mfa.data.otp
+
+import org.apache.commons.codec.binary.Base32
+import java.lang.reflect.UndeclaredThrowableException
+import java.security.GeneralSecurityException
+import java.util.*
+import javax.crypto.Mac
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * Stateful OTP generator for a single factor. The seed is decoded and the [Mac] is initialized once
+ * on construction, and the last generated OTP is kept until the time step changes, so calling
+ * [generateOtp] repeatedly within the same period does not touch the HMAC at all.
+ *
+ * The counter and HMAC output buffers are reused between time steps, so writing the OTP into a
+ * caller supplied buffer with [generateOtp] does not allocate.
+ *
+ * Instances are safe to share between threads.
+ */
+class TotpEngine @JvmOverloads constructor(
+    seed: String?,
+    private val period: Int = 30,
+    private val digits: Int = 6,
+    crypto: String = "HmacSHA1",
+    private val t0: Int = 0
+) {
+
+    private val mac: Mac? = initMac(seed, crypto)
+    private val counter = ByteArray(8)
+    private val hash = ByteArray(mac?.macLength ?: 0)
+
+    private var lastTimeStep: Long = Long.MIN_VALUE
+    private var lastCode: Long = 0
+    private var lastOtp: String? = null
+
+    /**
+     * Whether the seed could be decoded into a non empty key.
+     */
+    val isValid: Boolean
+        get() = mac != null
+
+    /**
+     * Generate the OTP for the given timestamp.
+     *
+     * @param timestamp Time in milliseconds
+     * @return Returns the OTP, or an empty string if the seed is invalid
+     */
+    @Synchronized
+    fun generateOtp(timestamp: Long): String {
+        if (!updateCode(timestamp)) {
+            return ""
+        }
+
+        return lastOtp ?: lastCode.toString().padStart(digits, '0').also { lastOtp = it }
+    }
+
+    /**
+     * Write the OTP for the given timestamp into [out], zero padded to the factor digits.
+     *
+     * @param timestamp Time in milliseconds
+     * @param out Buffer receiving the OTP digits
+     * @param offset Position in [out] of the first digit
+     * @return Returns the number of characters written, or 0 if the seed is invalid
+     */
+    @JvmOverloads
+    @Synchronized
+    fun generateOtp(timestamp: Long, out: CharArray, offset: Int = 0): Int {
+        if (!updateCode(timestamp)) {
+            return 0
+        }
+
+        require(out.size - offset >= digits) { "Buffer too small for $digits digits" }
+
+        var code = lastCode
+        for (i in digits - 1 downTo 0) {
+            out[offset + i] = '0' + (code % 10).toInt()
+            code /= 10
+        }
+        return digits
+    }
+
+    /**
+     * Time step (counter) the given timestamp falls into.
+     *
+     * @param timestamp Time in milliseconds
+     */
+    fun getTimeStep(timestamp: Long): Long = (timestamp / 1000 - t0) / period
+
+    private fun updateCode(timestamp: Long): Boolean {
+        val mac = this.mac ?: return false
+
+        val timeStep = getTimeStep(timestamp)
+        if (timeStep == lastTimeStep) {
+            return true
+        }
+
+        var value = timeStep
+        for (i in 7 downTo 0) {
+            counter[i] = value.toByte()
+            value = value ushr 8
+        }
+
+        mac.update(counter)
+        mac.doFinal(hash, 0)
+
+        val offset: Int = hash[hash.size - 1].toInt() and 0xf
+
+        val binary = ((hash[offset].toInt() and 0x7f).toLong() shl 24) or
+                ((hash[offset + 1].toInt() and 0xff).toLong() shl 16) or
+                ((hash[offset + 2].toInt() and 0xff).toLong() shl 8) or
+                ((hash[offset + 3].toInt() and 0xff).toLong())
+
+        lastCode = if (digits < POWERS_OF_TEN.size) binary % POWERS_OF_TEN[digits] else binary
+        lastOtp = null
+        lastTimeStep = timeStep
+        return true
+    }
+
+    companion object {
+
+        // The truncated HMAC is a 31 bit value, so anything past 10^10 leaves it unchanged
+        private val POWERS_OF_TEN = longArrayOf(
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L
+        )
+
+        private fun initMac(seed: String?, crypto: String): Mac? {
+            if (seed.isNullOrEmpty()) {
+                return null
+            }
+
+            val decodedSeed = Base32().decode(seed)
+            if (decodedSeed == null || decodedSeed.isEmpty()) {
+                return null
+            }
+
+            return try {
+                val hmac = Mac.getInstance(getSupportedCrypto(crypto))
+                hmac.init(SecretKeySpec(decodedSeed, "RAW"))
+                hmac
+            } catch (gse: GeneralSecurityException) {
+                throw UndeclaredThrowableException(gse)
+            }
+        }
+
+        internal fun getSupportedCrypto(crypto: String): String {
+            return when (crypto.toLowerCase(Locale.ROOT)) {
+                "hmacsha1", "hmacsha256", "hmacsha512" -> crypto
+                "sha256" -> "HmacSHA256"
+                "sha512" -> "HmacSHA512"
+                else -> "HmacSHA1"
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.onelogin.mfa.data.repository
+
+import com.onelogin.mfa.model.Factor
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.*
+
+/**
+ * Write-through cache in front of [MfaRepository]. All rows are loaded once on first access and
+ * indexed by id, credential id and normalized issuer, so reads never hit the database. Writes go to
+ * [repository] first and are only applied to the cache when they succeed.
+ *
+ * Factors are copied in and out of the cache, callers are free to mutate what they get back.
+ *
+ * Observers are served by [repository] directly, since they are driven by the database invalidation
+ * anyway and every write reaches the database before the cache.
+ */
+internal class CachedMfaRepository(private val repository: MfaRepository) : MfaRepository {
+
+    private val mutex = Mutex()
+    private var loaded = false
+
+    private val factorsById = HashMap<Long, Factor>()
+    private val idsByCredentialId = HashMap<String, TreeSet<Long>>()
+    private val idsByIssuer = HashMap<String, TreeSet<Long>>()
+
+    override suspend fun addFactor(factor: Factor): Long = withCache {
+        val id = repository.addFactor(factor)
+        if (id > 0) {
+            put(factor.copy(id = id))
+        }
+        id
+    }
+
+    override suspend fun getFactorByCredentialId(credentialId: String): Factor? = withCache {
+        idsByCredentialId[credentialId]?.first()?.let { factorsById[it]?.copy() }
+    }
+
+    override suspend fun getFactorById(id: Long): Factor? = withCache {
+        factorsById[id]?.copy()
+    }
+
+    override suspend fun getFactorsByIssuer(issuer: String): List<Factor> = withCache {
+        idsByIssuer[normalizeIssuer(issuer)]?.map { factorsById.getValue(it).copy() } ?: emptyList()
+    }
+
+    override suspend fun getAllFactors(): List<Factor> = withCache {
+        factorsById.values
+            .sortedWith(compareBy({ it.orderPreference }, { it.creationDate }, { it.id }))
+            .map { it.copy() }
+    }
+
+    override fun observeAllFactors(): Flow<List<Factor>> =
+        repository.observeAllFactors()
+
+    override fun observeFactorById(id: Long): Flow<Factor?> =
+        repository.observeFactorById(id)
+
+    override fun observeFactorByCredentialId(credentialId: String): Flow<Factor?> =
+        repository.observeFactorByCredentialId(credentialId)
+
+    override suspend fun updateFactor(factor: Factor): Int = withCache {
+        val updated = repository.updateFactor(factor)
+        if (updated > 0) {
+            remove(factor.id)
+            put(factor.copy())
+        }
+        updated
+    }
+
+    override suspend fun updateFactorSeed(id: Long, seed: String): Int = withCache {
+        val updated = repository.updateFactorSeed(id, seed)
+        if (updated > 0) {
+            factorsById[id]?.let { factorsById[id] = it.copy(seed = seed) }
+        }
+        updated
+    }
+
+    override suspend fun deleteFactor(factor: Factor): Int = withCache {
+        val deleted = repository.deleteFactor(factor)
+        if (deleted > 0) {
+            remove(factor.id)
+        }
+        deleted
+    }
+
+    override suspend fun deleteAllFactors(): Int = withCache {
+        val deleted = repository.deleteAllFactors()
+        factorsById.clear()
+        idsByCredentialId.clear()
+        idsByIssuer.clear()
+        deleted
+    }
+
+    override suspend fun deleteFactorByCredentialId(credentialId: String): Int = withCache {
+        val deleted = repository.deleteFactorByCredentialId(credentialId)
+        if (deleted > 0) {
+            idsByCredentialId[credentialId]?.toList()?.forEach { remove(it) }
+        }
+        deleted
+    }
+
+    override suspend fun deleteFactorById(id: Long): Int = withCache {
+        val deleted = repository.deleteFactorById(id)
+        if (deleted > 0) {
+            remove(id)
+        }
+        deleted
+    }
+
+    override suspend fun applyFactorChanges(deletedIds: List<Long>, settingsUpdates: List<Factor>): Int = withCache {
+        val affected = repository.applyFactorChanges(deletedIds, settingsUpdates)
+        deletedIds.forEach { remove(it) }
+        for (update in settingsUpdates) {
+            factorsById[update.id]?.let {
+                factorsById[update.id] = it.copy(
+                    allowRoot = update.allowRoot,
+                    forceLock = update.forceLock,
+                    requireBiometrics = update.requireBiometrics
+                )
+            }
+        }
+        affected
+    }
+
+    private suspend fun <T> withCache(block: suspend () -> T): T = mutex.withLock {
+        if (!loaded) {
+            repository.getAllFactors().forEach { put(it.copy()) }
+            loaded = true
+        }
+        block()
+    }
+
+    private fun put(factor: Factor) {
+        factorsById[factor.id] = factor
+        factor.credentialId?.let { idsByCredentialId.getOrPut(it) { TreeSet() }.add(factor.id) }
+        factor.issuer?.let { idsByIssuer.getOrPut(normalizeIssuer(it)) { TreeSet() }.add(factor.id) }
+    }
+
+    private fun remove(id: Long) {
+        val factor = factorsById.remove(id) ?: return
+        factor.credentialId?.let { removeFromIndex(idsByCredentialId, it, id) }
+        factor.issuer?.let { removeFromIndex(idsByIssuer, normalizeIssuer(it), id) }
+    }
+
+    private fun removeFromIndex(index: HashMap<String, TreeSet<Long>>, key: String, id: Long) {
+        val ids = index[key] ?: return
+        ids.remove(id)
+        if (ids.isEmpty()) {
+            index.remove(key)
+        }
+    }
+
+    // Same folding as UPPER() in FactorDao.getFactorsByIssuer: SQLite only changes ASCII letters
+    private fun normalizeIssuer(issuer: String): String {
+        val chars = issuer.toCharArray()
+        for (i in chars.indices) {
+            if (chars[i] in 'a'..'z') {
+                chars[i] = chars[i] - ('a' - 'A')
+            }
+        }
+        return String(chars)
+    }
+}
@@ -1,6 +1,7 @@
 package com.onelogin.mfa.data.repository
 
 import com.onelogin.mfa.model.Factor
+import kotlinx.coroutines.flow.Flow
 
 internal interface MfaRepository {
     suspend fun addFactor(factor: Factor): Long
@@ -13,8 +14,16 @@ internal interface MfaRepository {
 
     suspend fun getAllFactors(): List<Factor>
 
+    fun observeAllFactors(): Flow<List<Factor>>
+
+    fun observeFactorById(id: Long): Flow<Factor?>
+
+    fun observeFactorByCredentialId(credentialId: String): Flow<Factor?>
+
     suspend fun updateFactor(factor: Factor): Int
 
+    suspend fun updateFactorSeed(id: Long, seed: String): Int
+
     suspend fun deleteFactor(factor: Factor): Int
 
     suspend fun deleteAllFactors(): Int
@@ -23,4 +32,12 @@ internal interface MfaRepository {
 
     suspend fun deleteFactorById(id: Long): Int
 
+    /**
+     * Delete the factors with [deletedIds] and update only the device settings columns of
+     * [settingsUpdates], all in a single transaction. Seeds are never written.
+     *
+     * @return Returns the number of rows affected
+     */
+    suspend fun applyFactorChanges(deletedIds: List<Long>, settingsUpdates: List<Factor>): Int
+
 }
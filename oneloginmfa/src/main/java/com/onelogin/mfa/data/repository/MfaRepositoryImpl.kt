@@ -1,29 +1,51 @@
 package com.onelogin.mfa.data.repository
 
+import androidx.room.withTransaction
+import com.onelogin.mfa.OneLoginMfa
 import com.onelogin.mfa.data.db.FactorEntity
 import com.onelogin.mfa.data.db.FactorDao
+import com.onelogin.mfa.data.db.MfaDatabase
+import com.onelogin.mfa.data.metrics.MetricsRecorder
 import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.MfaOperation
+import kotlinx.coroutines.flow.Flow
 
-internal class MfaRepositoryImpl(private val factorDao: FactorDao) : MfaRepository {
+internal class MfaRepositoryImpl(
+    private val database: MfaDatabase,
+    private val factorDao: FactorDao = database.factorDao(),
+    private val metrics: MetricsRecorder = OneLoginMfa.metrics
+) : MfaRepository {
 
     override suspend fun addFactor(factor: Factor): Long =
         factorDao.insertFactor(FactorEntity.fromFactor(factor))
 
     override suspend fun getFactorByCredentialId(credentialId: String): Factor? =
-        factorDao.getFactorByCredentialId(credentialId)
+        metrics.measure(MfaOperation.DATABASE_READ) { factorDao.getFactorByCredentialId(credentialId) }
 
     override suspend fun getFactorById(id: Long): Factor? =
-        factorDao.getFactorById(id)
+        metrics.measure(MfaOperation.DATABASE_READ) { factorDao.getFactorById(id) }
 
     override suspend fun getFactorsByIssuer(issuer: String): List<Factor> =
-        factorDao.getFactorsByIssuer(issuer)
+        metrics.measure(MfaOperation.DATABASE_READ) { factorDao.getFactorsByIssuer(issuer) }
 
     override suspend fun getAllFactors(): List<Factor> =
-        factorDao.getAllFactors()
+        metrics.measure(MfaOperation.DATABASE_READ) { factorDao.getAllFactors() }
+
+    override fun observeAllFactors(): Flow<List<Factor>> =
+        factorDao.observeAllFactors()
+
+    override fun observeFactorById(id: Long): Flow<Factor?> =
+        factorDao.observeFactorById(id)
+
+    override fun observeFactorByCredentialId(credentialId: String): Flow<Factor?> =
+        factorDao.observeFactorByCredentialId(credentialId)
 
     override suspend fun updateFactor(factor: Factor): Int =
         factorDao.updateFactor(FactorEntity.fromFactor(factor))
 
+    override suspend fun updateFactorSeed(id: Long, seed: String): Int =
+        factorDao.updateFactorSeed(id, seed)
+
     override suspend fun deleteFactor(factor: Factor): Int =
         factorDao.deleteFactor(FactorEntity.fromFactor(factor))
 
@@ -35,4 +57,18 @@ internal class MfaRepositoryImpl(private val factorDao: FactorDao) : MfaReposito
 
     override suspend fun deleteFactorById(id: Long): Int =
         factorDao.deleteFactorById(id)
+
+    override suspend fun applyFactorChanges(deletedIds: List<Long>, settingsUpdates: List<Factor>): Int =
+        database.withTransaction {
+            var affected = if (deletedIds.isEmpty()) 0 else factorDao.deleteFactorsByIds(deletedIds)
+            for (factor in settingsUpdates) {
+                affected += factorDao.updateFactorSettings(
+                    factor.id,
+                    factor.allowRoot,
+                    factor.forceLock,
+                    factor.requireBiometrics
+                )
+            }
+            affected
+        }
 }
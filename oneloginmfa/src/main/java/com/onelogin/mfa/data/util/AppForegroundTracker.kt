@@ -0,0 +1,62 @@
+package com.onelogin.mfa.data.util
+
+import android.os.Handler
+import android.os.Looper
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.ProcessLifecycleOwner
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Tells the SDK components when the app moves between foreground and background, based on
+ * [ProcessLifecycleOwner]. Unlike counting started activities from the moment a component is
+ * created, the process lifecycle is tracked from app start, so transitions are reported correctly
+ * whenever a listener is added.
+ *
+ * Listeners are called on the main thread. A listener added while the app is in the foreground is
+ * told so right away, and the background transition is reported shortly after the last activity
+ * stops, so a configuration change does not count as one.
+ */
+internal object AppForegroundTracker {
+
+    interface Listener {
+        fun onForeground() {}
+        fun onBackground() {}
+    }
+
+    private val listeners = CopyOnWriteArraySet<Listener>()
+
+    private val isObserving = AtomicBoolean(false)
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    private val observer = LifecycleEventObserver { _, event ->
+        when (event) {
+            Lifecycle.Event.ON_START -> listeners.forEach { it.onForeground() }
+            Lifecycle.Event.ON_STOP -> listeners.forEach { it.onBackground() }
+            else -> {}
+        }
+    }
+
+    /**
+     * Can be called from any thread, the process lifecycle is observed from the main thread.
+     */
+    fun addListener(listener: Listener) {
+        listeners.add(listener)
+        val isFirstListener = isObserving.compareAndSet(false, true)
+        mainHandler.post {
+            val lifecycle = ProcessLifecycleOwner.get().lifecycle
+            if (isFirstListener) {
+                // Replays ON_START to every listener if the app is already in the foreground
+                lifecycle.addObserver(observer)
+            } else if (lifecycle.currentState.isAtLeast(Lifecycle.State.STARTED) && listener in listeners) {
+                listener.onForeground()
+            }
+        }
+    }
+
+    fun removeListener(listener: Listener) {
+        listeners.remove(listener)
+    }
+}
@@ -6,7 +6,8 @@ import android.os.Build
 import android.text.Html
 import android.widget.Toast
 import com.onelogin.mfa.BuildConfig
-import timber.log.Timber
+import com.onelogin.mfa.data.log.SdkLog
+import com.onelogin.mfa.model.MfaLogCategory
 import java.lang.Exception
 import java.util.regex.Pattern
 
@@ -76,7 +77,7 @@ object OneLoginMfaUtils {
                 return true
             }
         } catch (e: Exception) {
-            Timber.e(e,"Unable to verify third party code")
+            SdkLog.e(MfaLogCategory.FACTOR, e) { "Unable to verify third party code" }
             return false
         }
 
@@ -106,7 +107,7 @@ object OneLoginMfaUtils {
         val secret = uri.getQueryParameter("secret")
         val issuer = uri.getQueryParameter("issuer")
         if (issuer == null || !issuer.equals("OneLogin", ignoreCase = true)) {
-            Timber.d("Unsupported url format")
+            SdkLog.d(MfaLogCategory.FACTOR) { "Unsupported url format" }
             return null
         }
 
@@ -2,6 +2,7 @@
 
 package com.onelogin.mfa.model
 
+import androidx.room.Ignore
 import com.onelogin.mfa.data.otp.TotpToken
 
 /**
@@ -69,14 +70,16 @@ data class Factor(
         false
     )
 
+    @Ignore
+    private var totpToken: TotpToken? = null
+
     /**
      * Retrieve the current OTP for a Factor.
      *
      * @return Returns the OTP based on the seed, peeriod, digits, crypto, and time
      */
     fun getOtp(): String {
-        val totpToken = TotpToken(this.seed, this.period, this.digits, this.crypto)
-        return totpToken.generateOtp()
+        return getTotpToken().generateOtp()
     }
 
     /**
@@ -85,8 +88,7 @@ data class Factor(
      * @return Returns the time remaining in seconds
      */
     fun getTimer(): Int {
-        val totpToken = TotpToken(this.seed, this.period, this.digits, this.crypto)
-        return totpToken.getTimer()
+        return getTotpToken().getTimer()
     }
 
     /**
@@ -95,8 +97,7 @@ data class Factor(
      * @return Returns the time remaining in milliseconds
      */
     fun getTimerInMillis(): Long {
-        val totpToken = TotpToken(this.seed, this.period, this.digits, this.crypto)
-        return totpToken.getTimerInMillis()
+        return getTotpToken().getTimerInMillis()
     }
 
     /**
@@ -105,8 +106,7 @@ data class Factor(
      * @return Returns the OTP period time in milliseconds
      */
     fun getPeriodInMillis(): Long {
-        val totpToken = TotpToken(this.seed, this.period, this.digits, this.crypto)
-        return totpToken.periodInMillis
+        return getTotpToken().periodInMillis
     }
 
     /**
@@ -122,4 +122,17 @@ data class Factor(
             else -> this.issuer ?: ""
         }
     }
+
+    /**
+     * Token used for OTP generation, created on first use and recreated only when the seed, period,
+     * digits or crypto of this Factor change.
+     */
+    internal fun getTotpToken(): TotpToken {
+        val cached = totpToken
+        if (cached != null && cached.isFor(seed, period, digits, crypto)) {
+            return cached
+        }
+
+        return TotpToken(seed, period, digits, crypto).also { totpToken = it }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.onelogin.mfa.model
+
+/**
+ * Areas of the SDK whose log level can be set independently, see
+ * {@link com.onelogin.mfa.MfaConfiguration.Builder#logLevel(MfaLogCategory, int)}.
+ */
+enum class MfaLogCategory {
+    /**
+     * Initialization and the results of the {@link com.onelogin.mfa.MfaClient} operations.
+     */
+    CLIENT,
+
+    /**
+     * Registration, storage and refresh of factors.
+     */
+    FACTOR,
+
+    ENCRYPTION,
+    NETWORK,
+
+    /**
+     * Device settings and integrity checks.
+     */
+    DEVICE,
+
+    /**
+     * OTP, QR scanner and other views.
+     */
+    VIEW
+}
@@ -0,0 +1,64 @@
+package com.onelogin.mfa.model
+
+/**
+ * Operations measured by the SDK, see {@link com.onelogin.mfa.MfaMetricsListener}.
+ */
+enum class MfaOperation {
+    /**
+     * Registration of a factor from its code, including all the phases below.
+     */
+    REGISTER_FACTOR,
+
+    /**
+     * Registration of the device with OneLogin while registering a OneLogin factor.
+     */
+    REGISTER_FACTOR_NETWORK,
+
+    /**
+     * Retrieval of the device settings while registering a OneLogin factor.
+     */
+    REGISTER_FACTOR_SETTINGS,
+
+    /**
+     * Encryption and storage of a new factor.
+     */
+    REGISTER_FACTOR_PERSIST,
+
+    WEB_LOGIN_VERIFY_SUBDOMAIN,
+    WEB_LOGIN_INITIAL_AUTHORIZATION,
+    WEB_LOGIN_UPLOAD_USERNAME,
+    WEB_LOGIN_UPLOAD_PASSWORD,
+    WEB_LOGIN_REGISTRATION_NOTICE,
+    WEB_LOGIN_MFA_AUTHORIZATION,
+    WEB_LOGIN_AVAILABLE_FACTORS,
+    WEB_LOGIN_FACTOR_TOKEN,
+
+    /**
+     * Refresh of all the OneLogin factors.
+     */
+    REFRESH_FACTORS,
+
+    /**
+     * Check of the device settings of a single factor while refreshing factors.
+     */
+    REFRESH_FACTOR,
+
+    /**
+     * Read of factors from the database.
+     */
+    DATABASE_READ,
+
+    ENCRYPT,
+    DECRYPT,
+    GENERATE_OTP,
+
+    /**
+     * Call to the OneLogin API, including its retries.
+     */
+    API_CALL,
+
+    /**
+     * Failed attempt of a call to the OneLogin API which is retried.
+     */
+    API_RETRY
+}
@@ -0,0 +1,46 @@
+package com.onelogin.mfa.model
+
+/**
+ * Counters and latency histogram of an [MfaOperation] since the client was initialized or the
+ * metrics were last reset, see {@link com.onelogin.mfa.OneLoginMfa#getMetrics()}.
+ *
+ * @property bucketUpperBoundsNanos Inclusive upper bound of each histogram bucket but the last one,
+ * which holds every longer duration
+ * @property bucketCounts Number of operations in each histogram bucket
+ */
+data class OperationStats(
+    val operation: MfaOperation,
+    val count: Long,
+    val failureCount: Long,
+    val totalDurationNanos: Long,
+    val maxDurationNanos: Long,
+    val bucketUpperBoundsNanos: List<Long>,
+    val bucketCounts: List<Long>
+) {
+
+    val meanDurationNanos: Long
+        get() = if (count == 0L) 0 else totalDurationNanos / count
+
+    /**
+     * Estimate a percentile of the durations from the histogram.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @return Returns the upper bound of the bucket holding [percentile], [maxDurationNanos] if that
+     * is the last bucket, or 0 if nothing was recorded
+     */
+    fun percentileNanos(percentile: Double): Long {
+        if (count == 0L) {
+            return 0
+        }
+
+        val rank = Math.ceil(count * percentile.coerceIn(0.0, 100.0) / 100).toLong().coerceAtLeast(1)
+        var seen = 0L
+        for ((index, bucketCount) in bucketCounts.withIndex()) {
+            seen += bucketCount
+            if (seen >= rank) {
+                return bucketUpperBoundsNanos.getOrNull(index)?.coerceAtMost(maxDurationNanos) ?: maxDurationNanos
+            }
+        }
+        return maxDurationNanos
+    }
+}
@@ -0,0 +1,16 @@
+package com.onelogin.mfa.model
+
+/**
+ * OTP state of a factor at a single point in time.
+ *
+ * @property factor The factor the OTP was generated for
+ * @property otp The OTP, or an empty string if the factor seed is invalid
+ * @property remainingMillis Time remaining in milliseconds for the validity of the OTP
+ * @property periodInMillis OTP validity period in milliseconds
+ */
+data class OtpSnapshot(
+    val factor: Factor,
+    val otp: String,
+    val remainingMillis: Long,
+    val periodInMillis: Long
+)
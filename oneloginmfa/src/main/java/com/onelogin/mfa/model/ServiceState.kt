@@ -0,0 +1,24 @@
+package com.onelogin.mfa.model
+
+/**
+ * Health of a OneLogin API host as seen by the client, see
+ * {@link com.onelogin.mfa.MfaClient#getServiceStates()}.
+ */
+enum class ServiceState {
+    /**
+     * Calls are sent normally.
+     */
+    AVAILABLE,
+
+    /**
+     * The host recently failed, a few probe calls are sent to check whether it recovered while
+     * other calls fail right away.
+     */
+    DEGRADED,
+
+    /**
+     * The host failed repeatedly, calls fail right away without reaching the network until the
+     * host is probed again.
+     */
+    UNAVAILABLE
+}
@@ -10,8 +10,8 @@ import android.util.AttributeSet
 import android.view.View
 import androidx.core.content.ContextCompat.getColor
 import com.onelogin.mfa.R
+import com.onelogin.mfa.data.metrics.SdkTrace
 import com.onelogin.mfa.model.Factor
-import kotlinx.coroutines.*
 
 class CountdownDial @JvmOverloads constructor(context: Context, attrs: AttributeSet? = null) : View(
     context,
@@ -27,7 +27,17 @@ class CountdownDial @JvmOverloads constructor(context: Context, attrs: Attribute
     private var progress: Double = 0.toDouble()
     private var isViewVisible: Boolean = true
 
-    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+    private var factor: Factor? = null
+    private var duration: Long = 100
+    private val tickListener = object : OtpTicker.Listener {
+        override fun onTick(now: Long) {
+            val factor = this@CountdownDial.factor ?: return
+            SdkTrace.section("CountdownDial.update") {
+                val totpToken = factor.getTotpToken()
+                updateProgress(totpToken.getTimerInMillis(now).toDouble() / totpToken.periodInMillis)
+            }
+        }
+    }
 
     init {
         initAttributes(attrs)
@@ -55,17 +65,40 @@ class CountdownDial @JvmOverloads constructor(context: Context, attrs: Attribute
         canvas.drawOval(centerRect, centerPaint)
     }
 
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        updateSubscription()
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        OtpTicker.unsubscribe(tickListener)
+    }
+
     override fun onWindowVisibilityChanged(visibility: Int) {
         super.onWindowVisibilityChanged(visibility)
         isViewVisible = visibility == VISIBLE
+        updateSubscription()
     }
 
+    /**
+     * Show the countdown of a factor. Updates are driven by a ticker shared with every other
+     * countdown and OTP view, and stop while the view is detached or its window is hidden.
+     *
+     * @param factor Factor to show the countdown of
+     * @param duration Time in milliseconds between updates
+     */
     fun setProgress(factor: Factor, duration: Long = 100) {
-        scope.launch {
-            while (isViewVisible) {
-                updateProgress(factor.getTimerInMillis().toDouble() / factor.getPeriodInMillis())
-                delay(duration)
-            }
+        this.factor = factor
+        this.duration = duration
+        updateSubscription()
+    }
+
+    private fun updateSubscription() {
+        if (factor != null && isViewVisible && isAttachedToWindow) {
+            OtpTicker.subscribe(tickListener, duration)
+        } else {
+            OtpTicker.unsubscribe(tickListener)
         }
     }
 
@@ -4,17 +4,17 @@ import android.content.ClipData
 import android.content.ClipboardManager
 import android.content.Context
 import android.content.res.TypedArray
-import android.os.CountDownTimer
 import android.util.AttributeSet
 import android.util.DisplayMetrics
 import android.util.TypedValue
 import android.view.View
 import android.widget.*
 import androidx.core.view.updateLayoutParams
+import com.onelogin.mfa.OneLoginMfa
 import com.onelogin.mfa.R
 import com.onelogin.mfa.data.OneLoginMfaException
-import com.onelogin.mfa.data.device.DeviceManagerImpl
-import com.onelogin.mfa.data.network.NetworkProvider
+import com.onelogin.mfa.data.device.DeviceIntegrityMonitor
+import com.onelogin.mfa.data.metrics.SdkTrace
 import com.onelogin.mfa.data.util.OneLoginMfaUtils
 import com.onelogin.mfa.model.Factor
 import java.util.*
@@ -30,11 +30,25 @@ class Otp @JvmOverloads constructor(
     private val warningText: TextView by lazy { findViewById(R.id.onelogin_mfa_otp_warning) }
     private val warningIcon: ImageView by lazy { findViewById(R.id.onelogin_mfa_otp_warning_icon) }
 
-    private val deviceManager = DeviceManagerImpl(context, NetworkProvider.getOneLoginApi(context))
+    private val integrityMonitor by lazy { OneLoginMfa.getDeviceIntegrityMonitor(context) }
     private var factor: Factor? = null
-    private var period: Long = 0L
-    private var lastOtp: String = ""
-    private var countDownTimer: CountDownTimer? = null
+    private var isViewVisible: Boolean = true
+    private var otpBuffer: CharArray = CharArray(0)
+    private var lastOtp: CharArray = CharArray(0)
+    private var lastOtpLength: Int = -1
+    private var displayBuffer: CharArray = CharArray(0)
+    private val tickListener = object : OtpTicker.Listener {
+        override fun onTick(now: Long) {
+            SdkTrace.section("Otp.update") { generateOtpCode(now) }
+        }
+    }
+    private val integrityListener = object : DeviceIntegrityMonitor.Listener {
+        override fun onIntegrityChanged() {
+            // Redraw the current code with the new checks
+            lastOtpLength = -1
+            factor?.let { generateOtpCode(it.getTotpToken().getTime()) }
+        }
+    }
 
     private var showToast: Boolean = true
     private var showWarningIcon: Boolean = true
@@ -49,11 +63,20 @@ class Otp @JvmOverloads constructor(
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
         initClickListener()
+        integrityMonitor.addListener(integrityListener)
+        setTimer()
     }
 
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
-        countDownTimer?.cancel()
+        integrityMonitor.removeListener(integrityListener)
+        OtpTicker.unsubscribe(tickListener)
+    }
+
+    override fun onWindowVisibilityChanged(visibility: Int) {
+        super.onWindowVisibilityChanged(visibility)
+        isViewVisible = visibility == VISIBLE
+        setTimer()
     }
 
     fun setFactor(factor: Factor) {
@@ -61,7 +84,10 @@ class Otp @JvmOverloads constructor(
             throw OneLoginMfaException("Invalid factor")
         }
         this.factor = factor
-        this.period = factor.period.toLong()
+        this.otpBuffer = CharArray(factor.digits)
+        this.lastOtp = CharArray(factor.digits)
+        this.lastOtpLength = -1
+        this.displayBuffer = CharArray(factor.digits + 1)
         setTimer()
     }
 
@@ -143,54 +169,54 @@ class Otp @JvmOverloads constructor(
     }
 
     private fun setTimer() {
-        if (countDownTimer != null) {
-            countDownTimer?.cancel()
-        }
-
-        countDownTimer = object : CountDownTimer(period, 250) {
-            override fun onTick(millisUntilFinished: Long) {
-                generateOtpCode()
-            }
-
-            override fun onFinish() {
-                start()
-            }
+        val factor = this.factor ?: return
+
+        // The OTP only changes at time step boundaries, so that is the only time we need to wake up,
+        // and not at all while the view is detached or its window is hidden
+        if (isAttachedToWindow && isViewVisible) {
+            OtpTicker.subscribe(tickListener, factor.getTotpToken())
+        } else {
+            OtpTicker.unsubscribe(tickListener)
+            generateOtpCode(factor.getTotpToken().getTime())
         }
-        countDownTimer?.start()
     }
 
-    private fun generateOtpCode() {
-        if (factor == null) {
-            return
-        }
+    private fun generateOtpCode(now: Long) {
+        val totpToken = factor?.getTotpToken() ?: return
 
-        val otp = factor?.getOtp()
-        if (otp == lastOtp) {
+        val length = totpToken.generateOtp(now, otpBuffer)
+        if (length == lastOtpLength && otpBuffer.contentEquals(lastOtp)) {
             return
         }
-        
-        setCode(otp)
-        lastOtp = if (!otp.isNullOrEmpty()) otp else ""
+
+        setCode(otpBuffer, length)
+        otpBuffer.copyInto(lastOtp)
+        lastOtpLength = length
     }
 
-    private fun setCode(newCode: String?) {
+    private fun setCode(newCode: CharArray, length: Int) {
         if (factor == null) {
             return
         }
 
-        if (newCode.isNullOrBlank()) {
+        if (length == 0) {
             warningContainer.visibility = View.VISIBLE
             warningText.text = context.getString(R.string.onelogin_mfa_otp_generation_error)
             warningIcon.visibility = if (showWarningIcon) View.VISIBLE else View.GONE
             otpCode.visibility = View.GONE
         }
-        else if (factor?.allowRoot == false && deviceManager.isDeviceRooted()) {
+        else if (requiresIntegrityChecks() && !integrityMonitor.isReady()) {
+            // Nothing is shown until the checks the factor depends on have been evaluated
+            warningContainer.visibility = View.GONE
+            otpCode.visibility = View.INVISIBLE
+        }
+        else if (factor?.allowRoot == false && integrityMonitor.isDeviceRooted()) {
             warningContainer.visibility = View.VISIBLE
             warningText.text = unrootedDeviceRequiredMessage
             warningIcon.visibility = if (showWarningIcon) View.VISIBLE else View.GONE
             otpCode.visibility = View.GONE
         }
-        else if (factor?.forceLock == true && !deviceManager.isDeviceSecure()) {
+        else if (factor?.forceLock == true && !integrityMonitor.isDeviceSecure()) {
             warningContainer.visibility = View.VISIBLE
             warningText.text = keyguardRequiredMessage
             warningIcon.visibility = if (showWarningIcon) View.VISIBLE else View.GONE
@@ -199,14 +225,30 @@ class Otp @JvmOverloads constructor(
         else {
             warningContainer.visibility = View.GONE
             otpCode.visibility = View.VISIBLE
-            otpCode.text = formatOtp(newCode)
+            otpCode.setText(displayBuffer, 0, formatOtp(newCode, length, displayBuffer))
         }
     }
 
+    private fun requiresIntegrityChecks(): Boolean =
+        factor?.allowRoot == false || factor?.forceLock == true
+
     private fun formatOtp(code: String): String {
         return "${code.substring(0, code.length / 2)} ${code.substring(code.length / 2)}"
     }
 
+    /**
+     * Same layout as [formatOtp] but written into [out], which must hold at least `length + 1` chars.
+     *
+     * @return Returns the number of characters written
+     */
+    private fun formatOtp(code: CharArray, length: Int, out: CharArray): Int {
+        val half = length / 2
+        code.copyInto(out, 0, 0, half)
+        out[half] = ' '
+        code.copyInto(out, half + 1, half, length)
+        return length + 1
+    }
+
     private fun convertPixelsToDp(px: Int, context: Context): Float {
         return px / (context.resources.displayMetrics.densityDpi.toFloat() / DisplayMetrics.DENSITY_DEFAULT)
     }
@@ -0,0 +1,125 @@
+package com.onelogin.mfa.view
+
+import android.os.Handler
+import android.os.Looper
+import androidx.annotation.VisibleForTesting
+import com.onelogin.mfa.data.otp.TotpToken
+import com.onelogin.mfa.data.util.TimeProvider
+
+/**
+ * Process wide clock driving the [Otp] and [CountdownDial] views. Every subscription is aligned to
+ * a multiple of its interval, so views sharing an interval are notified together from a single
+ * main thread wakeup and a single clock read.
+ *
+ * Must only be used from the main thread.
+ */
+internal object OtpTicker {
+
+    interface Listener {
+        /**
+         * @param now Time in milliseconds read once for every listener notified on this tick
+         */
+        fun onTick(now: Long)
+    }
+
+    private class Subscription(val listener: Listener, val intervalMillis: Long, val totpToken: TotpToken?) {
+        var nextTick: Long = 0L
+
+        fun nextTickAfter(now: Long): Long = if (totpToken != null) {
+            now + totpToken.getTimerInMillis(now)
+        } else {
+            now - (now % intervalMillis) + intervalMillis
+        }
+    }
+
+    private val handler = Handler(Looper.getMainLooper())
+    private val subscriptions = ArrayList<Subscription>()
+    @VisibleForTesting
+    internal var getTime: () -> Long = TimeProvider()
+
+    private val tick = Runnable { dispatch(getTime()) }
+
+    /**
+     * Notify [listener] now and then on every multiple of [intervalMillis]. Subscribing a listener
+     * again replaces its previous interval.
+     *
+     * @param listener Listener to notify
+     * @param intervalMillis Interval in milliseconds, e.g. a frame interval or an OTP period
+     */
+    fun subscribe(listener: Listener, intervalMillis: Long) {
+        require(intervalMillis > 0) { "Interval must be positive" }
+        add(Subscription(listener, intervalMillis, null))
+    }
+
+    /**
+     * Notify [listener] now and then exactly at each time step boundary of [totpToken], as computed
+     * by {@link TotpToken#getTimerInMillis(long)}. Subscribing a listener again replaces its previous
+     * subscription.
+     *
+     * @param listener Listener to notify
+     * @param totpToken Token whose time steps drive the notifications
+     */
+    fun subscribe(listener: Listener, totpToken: TotpToken) {
+        add(Subscription(listener, totpToken.periodInMillis, totpToken))
+    }
+
+    fun unsubscribe(listener: Listener) {
+        removeSubscription(listener)
+        if (subscriptions.isEmpty()) {
+            handler.removeCallbacks(tick)
+        }
+    }
+
+    private fun add(subscription: Subscription) {
+        removeSubscription(subscription.listener)
+
+        val now = getTime()
+        subscription.nextTick = subscription.nextTickAfter(now)
+        subscriptions.add(subscription)
+
+        subscription.listener.onTick(now)
+        schedule(now)
+    }
+
+    private fun dispatch(now: Long) {
+        // Iterate backwards so listeners may unsubscribe while being notified
+        var i = subscriptions.size - 1
+        while (i >= 0) {
+            if (i < subscriptions.size) {
+                val subscription = subscriptions[i]
+                if (now >= subscription.nextTick) {
+                    subscription.nextTick = subscription.nextTickAfter(now)
+                    subscription.listener.onTick(now)
+                }
+            }
+            i--
+        }
+        schedule(now)
+    }
+
+    private fun schedule(now: Long) {
+        handler.removeCallbacks(tick)
+        if (subscriptions.isEmpty()) {
+            return
+        }
+
+        var nextTick = Long.MAX_VALUE
+        for (i in subscriptions.indices) {
+            if (subscriptions[i].nextTick < nextTick) {
+                nextTick = subscriptions[i].nextTick
+            }
+        }
+
+        // The handler runs on uptime while the clock may be NTP corrected, if we wake up a little
+        // early dispatch() finds nothing due and simply schedules again
+        handler.postDelayed(tick, (nextTick - now).coerceAtLeast(0L))
+    }
+
+    private fun removeSubscription(listener: Listener) {
+        for (i in subscriptions.indices.reversed()) {
+            if (subscriptions[i].listener === listener) {
+                subscriptions.removeAt(i)
+            }
+        }
+    }
+}
@@ -16,8 +16,9 @@ import com.google.zxing.BarcodeFormat
 import com.google.zxing.ResultPoint
 import com.journeyapps.barcodescanner.*
 import com.onelogin.mfa.R
+import com.onelogin.mfa.data.log.SdkLog
 import com.onelogin.mfa.data.util.OneLoginMfaUtils
-import timber.log.Timber
+import com.onelogin.mfa.model.MfaLogCategory
 
 class QrScan(context: Context, attrs: AttributeSet? = null) : RelativeLayout(context, attrs), ActivityCompat.OnRequestPermissionsResultCallback {
 
@@ -65,11 +66,11 @@ class QrScan(context: Context, attrs: AttributeSet? = null) : RelativeLayout(con
                     when {
                         OneLoginMfaUtils.isOneLoginCode(code) -> {
                             onScanListener?.onOneLoginCode(code)
-                            Timber.d("OneLogin Code: $code")
+                            SdkLog.d(MfaLogCategory.VIEW) { "Scanned a OneLogin code" }
                         }
                         OneLoginMfaUtils.isValidThirdPartyCode(code) -> {
                             onScanListener?.onThirdPartyCode(code)
-                            Timber.d("Third Party Code: $code")
+                            SdkLog.d(MfaLogCategory.VIEW) { "Scanned a third party code" }
                         }
                         else -> {
                             showQrError()
@@ -139,7 +140,7 @@ class QrScan(context: Context, attrs: AttributeSet? = null) : RelativeLayout(con
         when (requestCode) {
             CAMERA_REQUEST_CODE -> {
                 if (grantResults.isEmpty() || grantResults[0] != PackageManager.PERMISSION_GRANTED) {
-                    Timber.d("Camera permission denied")
+                    SdkLog.d(MfaLogCategory.VIEW) { "Camera permission denied" }
                 } else {
                     barcodeScanner.resume()
                 }
@@ -0,0 +1,78 @@
+package com.onelogin.mfa
+
+import com.onelogin.mfa.model.Factor
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import kotlinx.coroutines.test.resetMain
+import kotlinx.coroutines.test.setMain
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class DeferredMfaClientTest {
+
+    private val dispatcher = TestCoroutineDispatcher()
+    private val client = mockk<MfaClient>()
+    private val deferredClient = CompletableDeferred<MfaClient>()
+    private val callback = mockk<MfaCallback<List<Factor>, Exception>>(relaxed = true)
+
+    @Before
+    fun setup() {
+        Dispatchers.setMain(dispatcher)
+    }
+
+    @After
+    fun tearDown() {
+        Dispatchers.resetMain()
+        dispatcher.cleanupTestCoroutines()
+    }
+
+    @Test
+    fun testCallsBeforeReadyWaitForClient() {
+        every { client.getFactors(any()) } answers { firstArg<MfaCallback<List<Factor>, Exception>>().onSuccess(emptyList()) }
+        val deferredMfaClient = DeferredMfaClient(deferredClient)
+
+        deferredMfaClient.getFactors(callback)
+        verify(exactly = 0) { client.getFactors(any()) }
+
+        deferredClient.complete(client)
+
+        verify(exactly = 1) { client.getFactors(callback) }
+        verify(exactly = 1) { callback.onSuccess(emptyList()) }
+
+        // Once ready, calls are forwarded directly
+        deferredMfaClient.getFactors(callback)
+
+        verify(exactly = 2) { client.getFactors(callback) }
+    }
+
+    @Test
+    fun testBuildFailureIsPropagated() {
+        val deferredMfaClient = DeferredMfaClient(deferredClient)
+
+        deferredMfaClient.getFactors(callback)
+        deferredClient.completeExceptionally(IllegalStateException("Keystore unavailable"))
+
+        verify(exactly = 1) {
+            callback.onError(match { it.cause is IllegalStateException && it.cause?.message == "Keystore unavailable" })
+        }
+    }
+
+    @Test
+    fun testCancelledCallsDoNotReportErrors() {
+        val deferredMfaClient = DeferredMfaClient(deferredClient)
+
+        deferredMfaClient.getFactors(callback)
+        deferredMfaClient.cancel()
+        deferredClient.complete(client)
+
+        verify(exactly = 0) { callback.onError(any()) }
+        verify(exactly = 0) { client.getFactors(any()) }
+    }
+}
@@ -0,0 +1,63 @@
+package com.onelogin.mfa
+
+import com.onelogin.mfa.data.device.DeviceManager
+import com.onelogin.mfa.data.factor.FactorManager
+import com.onelogin.mfa.model.Factor
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import io.mockk.verifyOrder
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import kotlinx.coroutines.test.resetMain
+import kotlinx.coroutines.test.setMain
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class MfaClientImplTest {
+
+    private val dispatcher = TestCoroutineDispatcher()
+    private val deviceManager = mockk<DeviceManager>()
+    private val factorManager = mockk<FactorManager>()
+    private val callback = mockk<MfaCallback<Factor?, Exception>>(relaxed = true)
+
+    private val factor = Factor().apply {
+        id = 1
+        credentialId = "someCredentialId"
+        issuer = "OneLogin"
+    }
+
+    @Before
+    fun setup() {
+        Dispatchers.setMain(dispatcher)
+    }
+
+    @After
+    fun tearDown() {
+        Dispatchers.resetMain()
+        dispatcher.cleanupTestCoroutines()
+    }
+
+    @Test
+    fun testObserveFactorByCredentialIdCallback() {
+        val factorFlow = MutableStateFlow<Factor?>(factor)
+        every { factorManager.observeFactorByCredentialId("someCredentialId") } returns factorFlow
+        val client = MfaClientImpl(deviceManager, factorManager, serviceStates = MutableStateFlow(emptyMap()))
+
+        val subscription = client.observeFactorByCredentialId("someCredentialId", callback)
+        factorFlow.value = null
+        subscription.unsubscribe()
+        factorFlow.value = factor.copy(issuer = "Renamed")
+
+        verifyOrder {
+            callback.onSuccess(factor)
+            callback.onSuccess(null)
+        }
+        verify(exactly = 2) { callback.onSuccess(any()) }
+        verify(exactly = 0) { callback.onError(any()) }
+    }
+}
@@ -0,0 +1,203 @@
+package com.onelogin.mfa.data.device
+
+import com.onelogin.mfa.data.OneLoginMfaException
+import com.onelogin.mfa.data.api.Settings
+import com.onelogin.mfa.data.api.SettingsResponse
+import com.onelogin.mfa.data.db.DeviceSettingsDao
+import com.onelogin.mfa.data.db.DeviceSettingsEntity
+import com.onelogin.mfa.model.Factor
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.mockk
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.fail
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import java.io.IOException
+import java.net.UnknownHostException
+import org.junit.Test
+
+class CachingDeviceManagerTest {
+
+    private val deviceManager = mockk<DeviceManager>()
+    private val deviceSettingsDao = mockk<DeviceSettingsDao>(relaxUnitFun = true)
+
+    private var now = 0L
+
+    private val factor = Factor().apply {
+        credentialId = "someCredentialId"
+        shard = "01"
+    }
+
+    private val settings = Settings(
+        disallowJailbrokenOrRooted = true,
+        forceLockProtection = true,
+        disableBackup = true,
+        biometricVerification = false
+    )
+
+    private val cachingDeviceManager = CachingDeviceManager(
+        deviceManager,
+        deviceSettingsDao,
+        freshnessMillis = 1000L,
+        getTime = { now }
+    )
+
+    @Test
+    fun testFreshSettingsAreServedFromCache() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns emptyList()
+        coEvery { deviceManager.checkDeviceSettings(any()) } returns SettingsResponse(true, false, settings)
+
+        val result = runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+            now = 999L
+            cachingDeviceManager.checkDeviceSettings(factor)
+        }
+
+        coVerify(exactly = 1) { deviceManager.checkDeviceSettings(factor) }
+        coVerify(exactly = 1) {
+            deviceSettingsDao.insertDeviceSettings(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        }
+        assertEquals(SettingsResponse(true, false, settings), result)
+    }
+
+    @Test
+    fun testStaleSettingsAreUsedWhileOffline() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceManager.checkDeviceSettings(any()) } throws
+            OneLoginMfaException("Unable to resolve host", UnknownHostException("api.onelogin.com"))
+        now = 5000L
+
+        val result = runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+        }
+
+        coVerify(exactly = 1) { deviceManager.checkDeviceSettings(factor) }
+        assertEquals(SettingsResponse(true, false, settings), result)
+    }
+
+    @Test(expected = OneLoginMfaException::class)
+    fun testStaleSettingsAreNotUsedOnHttpErrors() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceManager.checkDeviceSettings(any()) } throws OneLoginMfaException("Server error", code = 500)
+        now = 5000L
+
+        runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+        }
+    }
+
+    @Test
+    fun testUnpairedFactorSettingsAreDropped() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceSettingsDao.deleteDeviceSettings(any()) } returns 1
+        coEvery { deviceManager.checkDeviceSettings(any()) } returns SettingsResponse(false, false, settings)
+        now = 5000L
+
+        val result = runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+        }
+
+        coVerify(exactly = 1) { deviceSettingsDao.deleteDeviceSettings("someCredentialId") }
+        assertEquals(false, result.isSuccess)
+    }
+
+    @Test
+    fun testFreshSettingsAreRevalidated() {
+        val revalidatingDeviceManager = CachingDeviceManager(
+            deviceManager,
+            deviceSettingsDao,
+            freshnessMillis = 1000L,
+            revalidateInBackground = true,
+            getTime = { now },
+            scope = CoroutineScope(Dispatchers.Unconfined)
+        )
+        val changedSettings = settings.copy(forceLockProtection = false)
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceManager.checkDeviceSettings(any()) } returns SettingsResponse(true, false, changedSettings)
+        now = 500L
+
+        val results = runBlocking {
+            listOf(
+                revalidatingDeviceManager.checkDeviceSettings(factor),
+                revalidatingDeviceManager.checkDeviceSettings(factor)
+            )
+        }
+
+        // Both hits are fresh, each one still checks the settings with OneLogin
+        coVerify(exactly = 2) { deviceManager.checkDeviceSettings(factor) }
+        assertEquals(
+            listOf(SettingsResponse(true, false, settings), SettingsResponse(true, false, changedSettings)),
+            results
+        )
+    }
+
+    @Test
+    fun testRemovedFactorSettingsAreDropped() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceSettingsDao.deleteDeviceSettings(any()) } returns 1
+        coEvery { deviceManager.checkDeviceSettings(any()) } throws
+            OneLoginMfaException("Network unavailable", IOException("Network unavailable"))
+
+        runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+            cachingDeviceManager.removeDeviceSettings(listOf("someCredentialId"))
+        }
+
+        coVerify(exactly = 1) { deviceSettingsDao.deleteDeviceSettings("someCredentialId") }
+        // Without the cached settings, being offline is an error again
+        try {
+            runBlocking { cachingDeviceManager.checkDeviceSettings(factor) }
+            fail("Expected the network error to be thrown")
+        } catch (e: OneLoginMfaException) {
+            assertEquals("Network unavailable", e.message)
+        }
+    }
+
+    @Test(expected = OneLoginMfaException::class)
+    fun testStaleSettingsAreNotUsedOnOtherErrors() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceManager.checkDeviceSettings(any()) } throws
+            OneLoginMfaException("Malformed response", IllegalStateException("Malformed response"))
+        now = 5000L
+
+        runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+        }
+    }
+
+    @Test(expected = OneLoginMfaException::class)
+    fun testTooStaleSettingsAreNotUsedOffline() {
+        coEvery { deviceSettingsDao.getAllDeviceSettings() } returns
+            listOf(DeviceSettingsEntity.fromSettings("someCredentialId", settings, 0L))
+        coEvery { deviceManager.checkDeviceSettings(any()) } throws
+            OneLoginMfaException("Unable to resolve host", UnknownHostException("api.onelogin.com"))
+        now = CachingDeviceManager.DEFAULT_MAX_STALENESS_MILLIS
+
+        runBlocking {
+            cachingDeviceManager.checkDeviceSettings(factor)
+        }
+    }
+
+    @Test
+    fun testNothingIsCachedWithoutFreshness() {
+        val uncachedDeviceManager = CachingDeviceManager(deviceManager, deviceSettingsDao, freshnessMillis = 0L)
+        coEvery { deviceManager.checkDeviceSettings(any()) } returns SettingsResponse(true, false, settings)
+
+        runBlocking {
+            uncachedDeviceManager.checkDeviceSettings(factor)
+            uncachedDeviceManager.checkDeviceSettings(factor)
+        }
+
+        coVerify(exactly = 2) { deviceManager.checkDeviceSettings(factor) }
+        coVerify(exactly = 0) { deviceSettingsDao.getAllDeviceSettings() }
+        coVerify(exactly = 0) { deviceSettingsDao.insertDeviceSettings(any()) }
+    }
+}
@@ -0,0 +1,111 @@
+package com.onelogin.mfa.data.device
+
+import android.content.Context
+import android.os.Looper
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertFalse
+import junit.framework.Assert.assertTrue
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestCoroutineDispatcher
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+@ExperimentalCoroutinesApi
+class DeviceIntegrityMonitorTest {
+
+    private val context = mockk<Context>(relaxed = true)
+    private val deviceIntegrity = mockk<DeviceIntegrity>()
+    private val dispatcher = TestCoroutineDispatcher()
+
+    @Before
+    fun setup() {
+        every { deviceIntegrity.isDeviceRooted() } returns true
+        every { deviceIntegrity.isDeviceSecure() } returns false
+    }
+
+    @Test
+    fun testChecksEvaluatedOnceOnCreation() {
+        val monitor = DeviceIntegrityMonitor(context, deviceIntegrity, dispatcher = dispatcher)
+
+        assertEquals(true, monitor.isDeviceRooted())
+        assertEquals(false, monitor.isDeviceSecure())
+        assertEquals(true, monitor.isDeviceRooted())
+
+        verify(exactly = 1) { deviceIntegrity.isDeviceRooted() }
+        verify(exactly = 1) { deviceIntegrity.isDeviceSecure() }
+    }
+
+    @Test
+    fun testRefreshReevaluatesChecks() {
+        val monitor = DeviceIntegrityMonitor(context, deviceIntegrity, dispatcher = dispatcher)
+        every { deviceIntegrity.isDeviceSecure() } returns true
+
+        monitor.refresh()
+
+        assertEquals(true, monitor.isDeviceSecure())
+        verify(exactly = 2) { deviceIntegrity.isDeviceSecure() }
+    }
+
+    @Test
+    fun testExpiredChecksReevaluated() {
+        val monitor = DeviceIntegrityMonitor(context, deviceIntegrity, ttlMillis = -1, dispatcher = dispatcher)
+        every { deviceIntegrity.isDeviceRooted() } returns false
+
+        // The first read returns the cached value and triggers a refresh
+        assertEquals(true, monitor.isDeviceRooted())
+        assertEquals(false, monitor.isDeviceRooted())
+    }
+
+    @Test
+    fun testCheckErrorKeepsPreviousValue() {
+        val monitor = DeviceIntegrityMonitor(context, deviceIntegrity, dispatcher = dispatcher)
+        every { deviceIntegrity.isDeviceRooted() } throws RuntimeException()
+
+        monitor.refresh()
+
+        assertEquals(true, monitor.isDeviceRooted())
+    }
+
+    @Test
+    fun testPendingUntilFirstEvaluation() {
+        every { deviceIntegrity.isDeviceRooted() } returns false
+        every { deviceIntegrity.isDeviceSecure() } returns true
+        dispatcher.pauseDispatcher()
+        val monitor = DeviceIntegrityMonitor(context, deviceIntegrity, dispatcher = dispatcher)
+        var notifications = 0
+        monitor.addListener(object : DeviceIntegrityMonitor.Listener {
+            override fun onIntegrityChanged() {
+                notifications++
+            }
+        })
+
+        // Reads never run the checks on the calling thread
+        assertFalse(monitor.isReady())
+        assertEquals(true, monitor.isDeviceRooted())
+        assertEquals(false, monitor.isDeviceSecure())
+        verify(exactly = 0) { deviceIntegrity.isDeviceRooted() }
+
+        dispatcher.resumeDispatcher()
+        shadowOf(Looper.getMainLooper()).idle()
+
+        assertTrue(monitor.isReady())
+        assertEquals(false, monitor.isDeviceRooted())
+        assertEquals(true, monitor.isDeviceSecure())
+        assertEquals(1, notifications)
+
+        // An unchanged result does not notify again
+        monitor.refresh()
+        shadowOf(Looper.getMainLooper()).idle()
+
+        assertEquals(1, notifications)
+    }
+}
@@ -0,0 +1,69 @@
+package com.onelogin.mfa.data.encryption
+
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertNull
+import junit.framework.Assert.assertTrue
+import org.junit.Test
+
+class DecryptedSeedCacheTest {
+
+    private var now = 0L
+    private val seedCache = DecryptedSeedCache(ttlMillis = 1000L, getTime = { now })
+
+    @Test
+    fun testGetReturnsSeedForSameEncryptedSeed() {
+        seedCache.put(1, "credentialId", "v2:encrypted", "seed".toByteArray())
+
+        assertEquals("seed", seedCache.get(1, "v2:encrypted"))
+        assertNull(seedCache.get(1, "v2:otherEncrypted"))
+        assertNull(seedCache.get(2, "v2:encrypted"))
+    }
+
+    @Test
+    fun testExpiredEntryIsZeroed() {
+        val seed = "seed".toByteArray()
+        seedCache.put(1, "credentialId", "v2:encrypted", seed)
+
+        now = 1001L
+
+        assertNull(seedCache.get(1, "v2:encrypted"))
+        assertTrue(seed.all { it == 0.toByte() })
+    }
+
+    @Test
+    fun testRemoveZeroesSeed() {
+        val first = "first".toByteArray()
+        val second = "second".toByteArray()
+        seedCache.put(1, "firstCredentialId", "v2:first", first)
+        seedCache.put(2, "secondCredentialId", "v2:second", second)
+
+        seedCache.remove(1)
+        seedCache.removeByCredentialId("secondCredentialId")
+
+        assertNull(seedCache.get(1, "v2:first"))
+        assertNull(seedCache.get(2, "v2:second"))
+        assertTrue(first.all { it == 0.toByte() })
+        assertTrue(second.all { it == 0.toByte() })
+    }
+
+    @Test
+    fun testClearZeroesSeeds() {
+        val seed = "seed".toByteArray()
+        seedCache.put(1, "credentialId", "v2:encrypted", seed)
+
+        seedCache.clear()
+
+        assertNull(seedCache.get(1, "v2:encrypted"))
+        assertTrue(seed.all { it == 0.toByte() })
+    }
+
+    @Test
+    fun testDisabledCacheKeepsNothing() {
+        val disabledCache = DecryptedSeedCache(ttlMillis = 0L, getTime = { now })
+        val seed = "seed".toByteArray()
+        disabledCache.put(1, "credentialId", "v2:encrypted", seed)
+
+        assertNull(disabledCache.get(1, "v2:encrypted"))
+        assertTrue(seed.all { it == 0.toByte() })
+    }
+}
@@ -0,0 +1,71 @@
+package com.onelogin.mfa.data.encryption
+
+import android.content.Context
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertFalse
+import junit.framework.Assert.assertTrue
+import junit.framework.Assert.fail
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.security.KeyPair
+import java.security.KeyPairGenerator
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class EncryptionManagerImplTest {
+
+    private val context: Context = RuntimeEnvironment.application
+
+    private val keyPairStore = object : KeyPairStore {
+        var keyPair: KeyPair? = null
+
+        override fun getKeyPair(): KeyPair? = keyPair
+
+        override fun generateKeyPair() {
+            if (keyPair == null) {
+                keyPair = newKeyPair()
+            }
+        }
+    }
+
+    private fun newKeyPair(): KeyPair = KeyPairGenerator.getInstance("RSA")
+        .apply { initialize(2048) }
+        .generateKeyPair()
+
+    private fun encryptionManager() = EncryptionManagerImpl(context, MetricsRecorder(), keyPairStore)
+
+    @Test
+    fun testDataKeyIsReusedAcrossInstances() {
+        val encrypted = encryptionManager().encrypt("someSeed")
+
+        assertTrue(encryptionManager().isCurrentFormat(encrypted))
+        assertEquals("someSeed", encryptionManager().decrypt(encrypted))
+    }
+
+    @Test
+    fun testKeyPairChangeReplacesDataKey() {
+        val previousManager = encryptionManager()
+        val previousSeed = previousManager.encrypt("someSeed")
+        previousManager.setMigrated()
+        assertTrue(previousManager.isMigrated())
+
+        // The keystore was reset and a new key pair generated under the stored wrapped data key
+        keyPairStore.keyPair = newKeyPair()
+        val encryptionManager = encryptionManager()
+
+        assertFalse(encryptionManager.isMigrated())
+        val newSeed = encryptionManager.encrypt("newSeed")
+        assertEquals("newSeed", encryptionManager.decrypt(newSeed))
+        assertEquals("newSeed", encryptionManager().decrypt(newSeed))
+        try {
+            encryptionManager.decrypt(previousSeed)
+            fail("Seeds of the previous data key cannot be decrypted")
+        } catch (e: Exception) {
+            // Expected, the previous data key is lost with the previous key pair
+        }
+    }
+}
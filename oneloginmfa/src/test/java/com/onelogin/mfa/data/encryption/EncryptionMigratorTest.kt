@@ -0,0 +1,82 @@
+package com.onelogin.mfa.data.encryption
+
+import com.onelogin.mfa.data.repository.MfaRepository
+import com.onelogin.mfa.model.Factor
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.just
+import io.mockk.mockk
+import io.mockk.Runs
+import io.mockk.verify
+import junit.framework.Assert.assertEquals
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class EncryptionMigratorTest {
+
+    private val repository = mockk<MfaRepository>()
+    private val encryptionManager = mockk<EncryptionManager>()
+
+    private val migrator = EncryptionMigrator(repository, encryptionManager)
+
+    private val legacyFactor = Factor().apply { id = 1; seed = "legacySeed" }
+    private val currentFactor = Factor().apply { id = 2; seed = "v2:currentSeed" }
+
+    @Test
+    fun testMigrateLegacyFactors() {
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.isMigrated() } returns false
+        every { encryptionManager.setMigrated() } just Runs
+        every { encryptionManager.isCurrentFormat("legacySeed") } returns false
+        every { encryptionManager.isCurrentFormat("v2:currentSeed") } returns true
+        every { encryptionManager.decrypt("legacySeed") } returns "decryptedSeed"
+        every { encryptionManager.encrypt("decryptedSeed") } returns "v2:encryptedSeed"
+        coEvery { repository.getAllFactors() } returns listOf(legacyFactor, currentFactor)
+        coEvery { repository.updateFactorSeed(any(), any()) } returns 1
+
+        val result = runBlocking { migrator.migrate() }
+
+        assertEquals(1, result)
+        coVerify(exactly = 1) { repository.updateFactorSeed(1, "v2:encryptedSeed") }
+        verify(exactly = 0) { encryptionManager.decrypt("v2:currentSeed") }
+        verify(exactly = 1) { encryptionManager.setMigrated() }
+    }
+
+    @Test
+    fun testMigrateSkippedOnceMigrated() {
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.isMigrated() } returns true
+
+        val result = runBlocking { migrator.migrate() }
+
+        assertEquals(0, result)
+        coVerify(exactly = 0) { repository.getAllFactors() }
+    }
+
+    @Test
+    fun testMigrateEncryptionDisabled() {
+        every { encryptionManager.isSupported() } returns false
+
+        val result = runBlocking { migrator.migrate() }
+
+        assertEquals(0, result)
+        coVerify(exactly = 0) { repository.getAllFactors() }
+    }
+
+    @Test
+    fun testMigrateDecryptionErrorSkipsFactor() {
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.isMigrated() } returns false
+        every { encryptionManager.isCurrentFormat(any()) } returns false
+        every { encryptionManager.decrypt(any()) } throws RuntimeException()
+        coEvery { repository.getAllFactors() } returns listOf(legacyFactor)
+
+        val result = runBlocking { migrator.migrate() }
+
+        assertEquals(0, result)
+        coVerify(exactly = 0) { repository.updateFactorSeed(any(), any()) }
+        // The factor is tried again on the next launch
+        verify(exactly = 0) { encryptionManager.setMigrated() }
+    }
+}
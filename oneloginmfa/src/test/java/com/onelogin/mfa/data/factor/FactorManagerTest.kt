@@ -3,11 +3,14 @@ package com.onelogin.mfa.data.factor
 import com.onelogin.mfa.data.OneLoginMfaException
 import com.onelogin.mfa.data.api.*
 import com.onelogin.mfa.data.device.DeviceManager
+import com.onelogin.mfa.data.encryption.DecryptedSeedCache
 import com.onelogin.mfa.data.encryption.EncryptionManager
 import com.onelogin.mfa.data.repository.MfaRepository
 import com.onelogin.mfa.model.Factor
 import io.mockk.*
 import junit.framework.Assert.assertEquals
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.toList
 import kotlinx.coroutines.runBlocking
 import org.junit.Before
 import org.junit.Test
@@ -567,6 +570,24 @@ class FactorManagerTest {
         assertEquals(emptyList<Factor>(), result)
     }
 
+    @Test
+    fun testGetFactorsKeepsOrderWhenDecryptingInParallel() {
+        val factorList = (1..20L).map { oneLoginTestFactor.copy(id = it, seed = "seed$it") }
+        coEvery { repository.getAllFactors() } returns factorList
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.decrypt(any()) } answers { "decrypted${firstArg<String>()}" }
+        every { encryptionManager.decrypt("seed7") } throws RuntimeException()
+
+        val result = runBlocking {
+            factorManager.getFactors()
+        }
+
+        verify(exactly = 20) { encryptionManager.decrypt(any()) }
+        assertEquals((1..20L).filter { it != 7L }.toList(), result.map { it.id })
+        assertEquals("decryptedseed1", result.first().seed)
+        assertEquals("decryptedseed20", result.last().seed)
+    }
+
     // getFactorsByIssuer()
 
     @Test
@@ -698,6 +719,30 @@ class FactorManagerTest {
         assertEquals("", result?.seed)
     }
 
+    @Test
+    fun testGetFactorByIdUsesDecryptedSeedCacheUntilUpdated() {
+        coEvery { repository.getFactorById(any()) } answers { oneLoginTestFactor.copy(seed = "someSeed") }
+        coEvery { repository.updateFactor(any()) } returns 1
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.decrypt(any()) } returns "decryptedSeed"
+        every { encryptionManager.encrypt(any()) } returns "someSeed"
+
+        val result = runBlocking {
+            factorManager.getFactorById(123456)
+            factorManager.getFactorById(123456)
+        }
+
+        verify(exactly = 1) { encryptionManager.decrypt("someSeed") }
+        assertEquals("decryptedSeed", result?.seed)
+
+        runBlocking {
+            factorManager.updateFactor(result!!)
+            factorManager.getFactorById(123456)
+        }
+
+        verify(exactly = 2) { encryptionManager.decrypt("someSeed") }
+    }
+
     @Test
     fun testGetFactorsByIdDoesNotExist() {
         coEvery { repository.getFactorById(any()) } returns null
@@ -783,17 +828,79 @@ class FactorManagerTest {
         assertEquals(null, result)
     }
 
+    // observeFactors()
+
+    @Test
+    fun testObserveFactorsDecryptsOnlyChangedRows() {
+        val first = oneLoginTestFactor.copy(id = 1, seed = "firstSeed")
+        val second = oneLoginTestFactor.copy(id = 2, seed = "secondSeed")
+        every { repository.observeAllFactors() } returns flowOf(
+            listOf(first.copy(), second.copy()),
+            listOf(first.copy(), second.copy()),
+            listOf(first.copy(), second.copy(seed = "updatedSeed"))
+        )
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.decrypt(any()) } answers { "decrypted-${firstArg<String>()}" }
+
+        val result = runBlocking {
+            FactorManagerImpl(
+                repository, encryptionManager, deviceManager, subdomainApi, DecryptedSeedCache(ttlMillis = 0)
+            ).observeFactors().toList()
+        }
+
+        verify(exactly = 1) { encryptionManager.decrypt("firstSeed") }
+        verify(exactly = 1) { encryptionManager.decrypt("secondSeed") }
+        verify(exactly = 1) { encryptionManager.decrypt("updatedSeed") }
+
+        assertEquals(2, result.size)
+        assertEquals(listOf("decrypted-firstSeed", "decrypted-secondSeed"), result[0].map { it.seed })
+        assertEquals(listOf("decrypted-firstSeed", "decrypted-updatedSeed"), result[1].map { it.seed })
+    }
+
+    @Test
+    fun testObserveFactorByIdEmitsNullOnceRemoved() {
+        every { repository.observeFactorById(1) } returns flowOf(oneLoginTestFactor.copy(id = 1), null)
+        every { encryptionManager.isSupported() } returns true
+        every { encryptionManager.decrypt(any()) } returns "decryptedSeed"
+
+        val result = runBlocking {
+            factorManager.observeFactorById(1).toList()
+        }
+
+        assertEquals(listOf(oneLoginTestFactor.copy(id = 1, seed = "decryptedSeed"), null), result)
+    }
+
+    // applyRefresh()
+
+    @Test
+    fun testApplyRefreshPersistsChangesAtOnceWithoutEncryption() {
+        val unpaired = oneLoginTestFactor.copy(id = 1, paired = false)
+        val updated = oneLoginTestFactor.copy(id = 2, forceLock = false)
+        coEvery { repository.applyFactorChanges(any(), any()) } returns 2
+
+        val result = runBlocking {
+            factorManager.applyRefresh(listOf(unpaired), listOf(updated))
+        }
+
+        coVerify(exactly = 1) { repository.applyFactorChanges(listOf(1L), listOf(updated)) }
+        verify(exactly = 0) { encryptionManager.encrypt(any()) }
+
+        assertEquals(2, result)
+    }
+
     // removeFactor()
 
     @Test
     fun testRemoveFactorSuccess() {
         coEvery { repository.deleteFactor(any()) } returns 1
+        coEvery { deviceManager.removeDeviceSettings(any()) } just Runs
 
         val result = runBlocking {
             factorManager.removeFactor(oneLoginTestFactor)
         }
 
         coVerify(exactly = 1) { repository.deleteFactor(oneLoginTestFactor) }
+        coVerify(exactly = 1) { deviceManager.removeDeviceSettings(listOf(oneLoginTestFactor.credentialId!!)) }
         assertEquals(1, result)
     }
 
@@ -802,12 +909,14 @@ class FactorManagerTest {
     @Test
     fun testRemoveAllFactorsSuccess() {
         coEvery { repository.deleteAllFactors() } returns 1
+        coEvery { deviceManager.removeAllDeviceSettings() } just Runs
 
         val result = runBlocking {
             factorManager.removeAllFactors()
         }
 
         coVerify(exactly = 1) { repository.deleteAllFactors() }
+        coVerify(exactly = 1) { deviceManager.removeAllDeviceSettings() }
         assertEquals(1, result)
     }
 
@@ -815,13 +924,16 @@ class FactorManagerTest {
 
     @Test
     fun testRemoveFactorByIdSuccess() {
+        coEvery { repository.getFactorById(oneLoginTestFactor.id) } returns oneLoginTestFactor
         coEvery { repository.deleteFactorById(any()) } returns 1
+        coEvery { deviceManager.removeDeviceSettings(any()) } just Runs
 
         val result = runBlocking {
             factorManager.removeFactorById(oneLoginTestFactor.id)
         }
 
         coVerify(exactly = 1) { repository.deleteFactorById(oneLoginTestFactor.id) }
+        coVerify(exactly = 1) { deviceManager.removeDeviceSettings(listOf(oneLoginTestFactor.credentialId!!)) }
         assertEquals(1, result)
     }
 
@@ -830,12 +942,14 @@ class FactorManagerTest {
     @Test
     fun testRemoveFactorByCredentialIdSuccess() {
         coEvery { repository.deleteFactorByCredentialId(any()) } returns 1
+        coEvery { deviceManager.removeDeviceSettings(any()) } just Runs
 
         val result = runBlocking {
             factorManager.removeFactorByCredentialId(oneLoginTestFactor.credentialId!!)
         }
 
         coVerify(exactly = 1) { repository.deleteFactorByCredentialId(oneLoginTestFactor.credentialId!!) }
+        coVerify(exactly = 1) { deviceManager.removeDeviceSettings(listOf(oneLoginTestFactor.credentialId!!)) }
         assertEquals(1, result)
     }
 
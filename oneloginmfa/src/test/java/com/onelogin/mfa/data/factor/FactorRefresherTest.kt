@@ -0,0 +1,89 @@
+package com.onelogin.mfa.data.factor
+
+import com.onelogin.mfa.data.api.Settings
+import com.onelogin.mfa.data.api.SettingsResponse
+import com.onelogin.mfa.data.device.DeviceManager
+import com.onelogin.mfa.model.Factor
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.mockk
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertTrue
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class FactorRefresherTest {
+
+    private val factorManager = mockk<FactorManager>()
+    private val deviceManager = mockk<DeviceManager>()
+
+    private val unchangedSettings = SettingsResponse(
+        isSuccess = true,
+        unpaired = false,
+        settings = Settings(
+            disallowJailbrokenOrRooted = true,
+            forceLockProtection = false,
+            disableBackup = true,
+            biometricVerification = false
+        )
+    )
+
+    private fun factor(id: Long, shard: String) = Factor().apply {
+        this.id = id
+        this.shard = shard
+        credentialId = "credentialId$id"
+        issuer = "OneLogin"
+        allowRoot = false
+        forceLock = false
+        requireBiometrics = false
+    }
+
+    @Test
+    fun testRefreshKeepsFactorOrderAcrossShards() {
+        val factors = listOf(factor(1, "01"), factor(2, "02"), factor(3, "01"), factor(4, "02"))
+        coEvery { factorManager.getFactorsByIssuer("OneLogin") } returns factors
+        coEvery { factorManager.applyRefresh(any(), any()) } returns 3
+        coEvery { deviceManager.checkDeviceSettings(any()) } returns unchangedSettings
+        coEvery { deviceManager.checkDeviceSettings(match { it.id == 1L || it.id == 4L }) } returns
+            unchangedSettings.copy(isSuccess = false)
+        coEvery { deviceManager.checkDeviceSettings(match { it.id == 2L }) } returns
+            unchangedSettings.copy(settings = unchangedSettings.settings.copy(forceLockProtection = true))
+
+        val result = runBlocking {
+            FactorRefresher(factorManager, deviceManager).refresh()
+        }
+
+        assertEquals(2, result.unpairedCount)
+        assertEquals(listOf(1L, 4L), result.unpairedFactors.map { it.id })
+        assertEquals(1, result.updatedCount)
+        assertEquals(listOf(2L), result.updatedFactors.map { it.id })
+        coVerify(exactly = 4) { deviceManager.checkDeviceSettings(any()) }
+        coVerify(exactly = 1) { factorManager.applyRefresh(result.unpairedFactors, result.updatedFactors) }
+        coVerify(exactly = 0) { factorManager.removeFactor(any()) }
+        coVerify(exactly = 0) { factorManager.updateFactor(any()) }
+    }
+
+    @Test
+    fun testRefreshRunsCallsConcurrentlyWithinLimit() {
+        val factors = (1..10L).map { factor(it, if (it % 2 == 0L) "01" else "02") }
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        coEvery { factorManager.getFactorsByIssuer("OneLogin") } returns factors
+        coEvery { deviceManager.checkDeviceSettings(any()) } coAnswers {
+            maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+            delay(50)
+            running.decrementAndGet()
+            unchangedSettings
+        }
+        coEvery { factorManager.applyRefresh(any(), any()) } returns 0
+
+        runBlocking {
+            FactorRefresher(factorManager, deviceManager, maxConcurrency = 3).refresh()
+        }
+
+        assertTrue(maxRunning.get() > 1)
+        assertTrue(maxRunning.get() <= 3)
+    }
+}
@@ -5,12 +5,15 @@ import com.onelogin.mfa.data.api.*
 import io.mockk.coEvery
 import io.mockk.coVerify
 import io.mockk.mockk
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.async
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.test.TestCoroutineDispatcher
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
 import okhttp3.ResponseBody.Companion.toResponseBody
 import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -71,6 +74,68 @@ class WebLoginHelperTest {
         assertEquals("10-1234567", result)
     }
 
+    @Test
+    fun testConcurrentRegistrationsKeepTheirOwnState() {
+        val firstStarted = CompletableDeferred<Unit>()
+        val secondFinished = CompletableDeferred<Unit>()
+        coEvery { subdomainApi.isDomainAvailable(any()) } returns domainAvailableResponse
+        coEvery { subdomainApi.getInitialAuthorization(any(), "first") } coAnswers {
+            firstStarted.complete(Unit)
+            secondFinished.await()
+            accessServiceResponse.copy(context = AccessServiceContext("firstJwt"))
+        }
+        coEvery { subdomainApi.getInitialAuthorization(any(), "second") } coAnswers {
+            firstStarted.await()
+            accessServiceResponse.copy(context = AccessServiceContext("secondJwt"))
+        }
+        coEvery { subdomainApi.uploadUsername(any(), any(), any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.uploadPassword(any(), any(), any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.getMfaRegistrationNotice(any(), any(), any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.getMfaAuthorization(any(), any()) } returns accessServiceResponse.mfa!!
+        coEvery { subdomainApi.getAvailableFactors(any(), any()) } returns availableFactors
+        coEvery { subdomainApi.getFactorToken(any(), "first", any()) } returns factorToken
+        coEvery { subdomainApi.getFactorToken(any(), "second", any()) } coAnswers {
+            secondFinished.complete(Unit)
+            factorToken
+        }
+
+        runBlocking {
+            val first = async { webLoginHelper.register("first", "firstUsername", "firstPassword") }
+            val second = async { webLoginHelper.register("second", "secondUsername", "secondPassword") }
+            assertEquals("10-1234567", first.await())
+            assertEquals("10-1234567", second.await())
+        }
+
+        coVerify(exactly = 1) {
+            subdomainApi.uploadUsername(
+                payload = UploadUsernameRequest(UploadUsernameVariables("firstUsername")),
+                domain = "first",
+                jwt = "firstJwt"
+            )
+        }
+        coVerify(exactly = 1) {
+            subdomainApi.uploadUsername(
+                payload = UploadUsernameRequest(UploadUsernameVariables("secondUsername")),
+                domain = "second",
+                jwt = "secondJwt"
+            )
+        }
+        coVerify(exactly = 1) {
+            subdomainApi.uploadPassword(
+                payload = UploadPasswordRequest(UploadPasswordVariables("firstPassword")),
+                domain = "first",
+                jwt = "someContextJwt"
+            )
+        }
+        coVerify(exactly = 1) {
+            subdomainApi.uploadPassword(
+                payload = UploadPasswordRequest(UploadPasswordVariables("secondPassword")),
+                domain = "second",
+                jwt = "someContextJwt"
+            )
+        }
+    }
+
     @Test(expected = OneLoginMfaException::class)
     fun testRegisterEmptyInputs() {
         try {
@@ -99,6 +164,47 @@ class WebLoginHelperTest {
         }
     }
 
+    @Test
+    fun testRegisterReusesVerifiedSubdomain() {
+        coEvery { subdomainApi.isDomainAvailable(any()) } returns domainAvailableResponse
+        coEvery { subdomainApi.getInitialAuthorization(any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.uploadUsername(any(), any(), any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.uploadPassword(any(), any(), any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.getMfaRegistrationNotice(any(), any(), any(), any()) } returns accessServiceResponse
+        coEvery { subdomainApi.getMfaAuthorization(any(), any()) } returns accessServiceResponse.mfa!!
+        coEvery { subdomainApi.getAvailableFactors(any(), any()) } returns availableFactors
+        coEvery { subdomainApi.getFactorToken(any(), any(), any()) } returns factorToken
+
+        runBlocking {
+            webLoginHelper.register("someSubdomain", "someUsername", "somePassword")
+            webLoginHelper.register("SomeSubdomain", "otherUsername", "otherPassword")
+        }
+
+        coVerify(exactly = 1) { subdomainApi.isDomainAvailable(any()) }
+        coVerify(exactly = 2) { subdomainApi.getInitialAuthorization(any(), any()) }
+    }
+
+    @Test
+    fun testRegisterReusesInvalidSubdomain() {
+        val domainAvailableResponse = DomainAvailableResponse(listOf(DomainAvailableData(true)))
+        coEvery { subdomainApi.isDomainAvailable(any()) } returns domainAvailableResponse
+        coEvery { subdomainApi.getInitialAuthorization(any(), any()) } returns accessServiceResponse
+
+        repeat(2) {
+            try {
+                runBlocking {
+                    webLoginHelper.register("someSubdomain", "someUsername", "somePassword")
+                }
+                fail("Expected an invalid subdomain")
+            } catch (exception: OneLoginMfaException) {
+                assertEquals("Invalid subdomain", exception.message)
+            }
+        }
+
+        coVerify(exactly = 1) { subdomainApi.isDomainAvailable("someSubdomain") }
+        coVerify(atMost = 1) { subdomainApi.getInitialAuthorization(any(), any()) }
+    }
+
     @Test(expected = OneLoginMfaException::class)
     fun testIsDomainAvailableHttpException() {
         coEvery { subdomainApi.isDomainAvailable(any()) } throws HttpException(Response.error<Any>(422, errorBody))
@@ -0,0 +1,82 @@
+package com.onelogin.mfa.data.log
+
+import android.util.Log
+import com.onelogin.mfa.model.Factor
+import com.onelogin.mfa.model.MfaLogCategory
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Before
+import org.junit.Test
+import timber.log.Timber
+
+class SdkLogTest {
+
+    private val logs = mutableListOf<Triple<Int, String?, String>>()
+
+    private val tree = object : Timber.Tree() {
+        override fun log(priority: Int, tag: String?, message: String, t: Throwable?) {
+            logs.add(Triple(priority, tag, message))
+        }
+    }
+
+    @Before
+    fun setup() {
+        Timber.plant(tree)
+    }
+
+    @After
+    fun tearDown() {
+        Timber.uproot(tree)
+        SdkLog.configure(Log.WARN)
+    }
+
+    @Test
+    fun testDisabledLevelSkipsMessage() {
+        SdkLog.configure(Log.WARN)
+        var built = false
+
+        SdkLog.d(MfaLogCategory.CLIENT) {
+            built = true
+            "Retrieved factors"
+        }
+
+        assertFalse(built)
+        assertEquals(emptyList<Triple<Int, String?, String>>(), logs)
+    }
+
+    @Test
+    fun testCategoryLevelOverridesDefault() {
+        SdkLog.configure(Log.ERROR, mapOf(MfaLogCategory.NETWORK to Log.DEBUG))
+
+        SdkLog.d(MfaLogCategory.NETWORK) { "Retrying GET /api/2/mfa" }
+        SdkLog.d(MfaLogCategory.CLIENT) { "Retrieved factors" }
+        SdkLog.e(MfaLogCategory.CLIENT) { "Failed to retrieve all factors" }
+
+        assertEquals(
+            listOf(
+                Triple(Log.DEBUG, "OneLoginMfa/NETWORK", "Retrying GET /api/2/mfa"),
+                Triple(Log.ERROR, "OneLoginMfa/CLIENT", "Failed to retrieve all factors")
+            ),
+            logs
+        )
+    }
+
+    @Test
+    fun testSecretsAreRedacted() {
+        val factor = Factor().apply {
+            id = 42
+            issuer = "OneLogin"
+            seed = "JBSWY3DPEHPK3PXP"
+        }
+        SdkLog.configure(Log.DEBUG)
+
+        SdkLog.d(MfaLogCategory.FACTOR) { "Added $factor" }
+        SdkLog.d(MfaLogCategory.VIEW) { "Scanned otpauth://totp/name?secret=JBSWY3DPEHPK3PXP&issuer=Acme" }
+
+        assertFalse(logs[0].third.contains("JBSWY3DPEHPK3PXP"))
+        assertEquals("Scanned otpauth://totp/name?secret=***&issuer=Acme", logs[1].third)
+        assertEquals("factor 42 (issuer OneLogin)", SdkLog.describe(factor))
+        assertEquals("2 factors", SdkLog.describe(listOf(factor, factor)))
+    }
+}
@@ -0,0 +1,92 @@
+package com.onelogin.mfa.data.metrics
+
+import com.onelogin.mfa.MfaMetricsListener
+import com.onelogin.mfa.model.MfaOperation
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+
+class MetricsRecorderTest {
+
+    private var time = 0L
+    private val recorder = MetricsRecorder { time }
+
+    @Test
+    fun testMeasureDisabled() {
+        val result = recorder.measure(MfaOperation.DECRYPT) {
+            time += 1_000_000
+            "someSeed"
+        }
+
+        assertEquals("someSeed", result)
+        assertFalse(recorder.isEnabled)
+        assertEquals(0, stats(MfaOperation.DECRYPT).count)
+    }
+
+    @Test
+    fun testMeasureRecordsCountsAndHistogram() {
+        recorder.configure(true, null)
+
+        recorder.measure(MfaOperation.DECRYPT) { time += 80_000 }
+        recorder.measure(MfaOperation.DECRYPT) { time += 3_000_000 }
+        recorder.measure<Int>(MfaOperation.DECRYPT, { it > 0 }) {
+            time += 20_000_000_000
+            0
+        }
+        try {
+            recorder.measure(MfaOperation.DECRYPT) {
+                time += 1_000
+                throw IllegalStateException("Corrupted seed")
+            }
+            fail("Expected the exception to be rethrown")
+        } catch (e: IllegalStateException) {
+            assertEquals("Corrupted seed", e.message)
+        }
+
+        val stats = stats(MfaOperation.DECRYPT)
+        assertEquals(4, stats.count)
+        assertEquals(2, stats.failureCount)
+        assertEquals(20_003_081_000, stats.totalDurationNanos)
+        assertEquals(20_000_000_000, stats.maxDurationNanos)
+        assertEquals(stats.bucketUpperBoundsNanos.size + 1, stats.bucketCounts.size)
+        assertEquals(1L, stats.bucketCounts.first())
+        assertEquals(1L, stats.bucketCounts.last())
+        assertEquals(4L, stats.bucketCounts.sum())
+        assertEquals(5_000_000, stats.percentileNanos(75.0))
+        assertEquals(20_000_000_000, stats.percentileNanos(100.0))
+        assertEquals(0, stats(MfaOperation.ENCRYPT).count)
+
+        recorder.reset()
+
+        assertEquals(0, stats(MfaOperation.DECRYPT).count)
+        assertEquals(0L, stats(MfaOperation.DECRYPT).bucketCounts.sum())
+    }
+
+    @Test
+    fun testListenerIsNotified() {
+        val events = mutableListOf<Triple<MfaOperation, Long, Boolean>>()
+        recorder.configure(false, object : MfaMetricsListener {
+            override fun onOperation(operation: MfaOperation, durationNanos: Long, success: Boolean) {
+                events.add(Triple(operation, durationNanos, success))
+                throw RuntimeException("Listener failure")
+            }
+        })
+
+        recorder.measure(MfaOperation.GENERATE_OTP) { time += 40_000 }
+        recorder.record(MfaOperation.API_RETRY, 250_000_000, false)
+
+        assertTrue(recorder.isEnabled)
+        assertEquals(
+            listOf(
+                Triple(MfaOperation.GENERATE_OTP, 40_000L, true),
+                Triple(MfaOperation.API_RETRY, 250_000_000L, false)
+            ),
+            events
+        )
+        assertEquals(1, stats(MfaOperation.API_RETRY).failureCount)
+    }
+
+    private fun stats(operation: MfaOperation) = recorder.getStats().first { it.operation == operation }
+}
@@ -0,0 +1,48 @@
+package com.onelogin.mfa.data.metrics
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.fail
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class SdkTraceTest {
+
+    @After
+    fun tearDown() {
+        SdkTrace.isEnabled = false
+    }
+
+    @Test
+    fun testSectionsRunBlock() {
+        assertEquals(1, SdkTrace.section("disabled") { 1 })
+
+        SdkTrace.isEnabled = true
+
+        assertEquals(2, SdkTrace.section("enabled") { 2 })
+        assertEquals(3, SdkTrace.asyncSection("enabledAsync") { 3 })
+    }
+
+    @Test
+    fun testSectionEndsWhenBlockThrows() {
+        SdkTrace.isEnabled = true
+
+        try {
+            SdkTrace.section("failing") { throw IllegalStateException("Failure") }
+            fail("Expected the exception to be rethrown")
+        } catch (e: IllegalStateException) {
+            assertEquals("Failure", e.message)
+        }
+        assertEquals(4, SdkTrace.section("next") { 4 })
+    }
+
+    @Test
+    fun testSectionNameIsPrefixedAndTruncated() {
+        assertEquals("OneLoginMfa:TotpToken.generateOtp", SdkTrace.sectionName("TotpToken.generateOtp"))
+        assertEquals(127, SdkTrace.sectionName("a".repeat(200)).length)
+    }
+}
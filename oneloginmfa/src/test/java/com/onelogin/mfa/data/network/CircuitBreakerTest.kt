@@ -0,0 +1,125 @@
+package com.onelogin.mfa.data.network
+
+import com.onelogin.mfa.model.ServiceState
+import io.mockk.every
+import io.mockk.mockk
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertNotNull
+import junit.framework.Assert.assertNull
+import junit.framework.Assert.fail
+import okhttp3.Interceptor
+import okhttp3.Request
+import org.junit.Test
+
+class CircuitBreakerTest {
+
+    private var now = 0L
+
+    private val circuitBreaker = CircuitBreaker(
+        "api.onelogin.com",
+        failureThreshold = 3,
+        openDurationMillis = 1000L,
+        slowCallThresholdMillis = 500L,
+        getTime = { now }
+    )
+
+    private fun fail(times: Int) = repeat(times) {
+        circuitBreaker.onResult(circuitBreaker.tryAcquire()!!, success = false)
+    }
+
+    @Test
+    fun testOpensAfterConsecutiveFailures() {
+        fail(2)
+        circuitBreaker.onResult(circuitBreaker.tryAcquire()!!, success = true)
+        fail(2)
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state)
+
+        fail(1)
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state)
+        assertEquals(ServiceState.UNAVAILABLE, circuitBreaker.serviceState)
+        assertNull(circuitBreaker.tryAcquire())
+    }
+
+    @Test
+    fun testSlowCallsCountAsFailures() {
+        repeat(3) {
+            val permit = circuitBreaker.tryAcquire()!!
+            now += 500L
+            circuitBreaker.onResult(permit, success = true)
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state)
+    }
+
+    @Test
+    fun testHalfOpenLetsOneProbeThrough() {
+        fail(3)
+        now += 1000L
+
+        val probe = circuitBreaker.tryAcquire()
+
+        assertNotNull(probe)
+        assertEquals(ServiceState.DEGRADED, circuitBreaker.serviceState)
+        assertNull(circuitBreaker.tryAcquire())
+
+        circuitBreaker.onResult(probe!!, success = true)
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state)
+        assertNotNull(circuitBreaker.tryAcquire())
+    }
+
+    @Test
+    fun testFailedProbeOpensAgain() {
+        fail(3)
+        now += 1000L
+
+        circuitBreaker.onResult(circuitBreaker.tryAcquire()!!, success = false)
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state)
+        now += 999L
+        assertNull(circuitBreaker.tryAcquire())
+    }
+
+    @Test
+    fun testRegistryPublishesStatesByHost() {
+        val registry = CircuitBreakerRegistry(getTime = { now })
+
+        registry.get("api.onelogin.com")
+        val degraded = registry.get("api-eu.onelogin.com")
+        repeat(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD) {
+            degraded.onResult(degraded.tryAcquire()!!, success = false)
+        }
+
+        assertEquals(
+            mapOf("api.onelogin.com" to ServiceState.AVAILABLE, "api-eu.onelogin.com" to ServiceState.UNAVAILABLE),
+            registry.states.value
+        )
+    }
+
+    @Test
+    fun testInterceptorReleasesProbeOnUnexpectedException() {
+        val registry = CircuitBreakerRegistry(getTime = { now })
+        val breaker = registry.get("api.onelogin.com")
+        repeat(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD) {
+            breaker.onResult(breaker.tryAcquire()!!, success = false)
+        }
+        now += CircuitBreaker.DEFAULT_OPEN_DURATION_MILLIS
+
+        val chain = mockk<Interceptor.Chain>()
+        every { chain.request() } returns Request.Builder().url("https://api.onelogin.com/settings").build()
+        every { chain.proceed(any()) } throws IllegalStateException("Malformed response")
+
+        try {
+            CircuitBreakerInterceptor(registry).intercept(chain)
+            fail("Expected the exception to be rethrown")
+        } catch (e: IllegalStateException) {
+            assertEquals("Malformed response", e.message)
+        }
+
+        // The probe was given back, so the half-open circuit can still be probed
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state)
+        assertNotNull(breaker.tryAcquire())
+    }
+}
@@ -0,0 +1,93 @@
+package com.onelogin.mfa.data.network
+
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertNull
+import junit.framework.Assert.assertTrue
+import okhttp3.FormBody
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.internal.http.toHttpDateString
+import org.junit.Test
+import java.io.IOException
+import java.util.Date
+
+class ExponentialBackoffRetryPolicyTest {
+
+    private val retryPolicy = ExponentialBackoffRetryPolicy()
+
+    private val getRequest = Request.Builder().url("https://api.onelogin.com/settings").build()
+    private val postRequest = Request.Builder()
+        .url("https://api.onelogin.com/devices")
+        .post(FormBody.Builder().build())
+        .build()
+
+    private fun response(request: Request, code: Int, retryAfter: String? = null): Response =
+        Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("")
+            .apply { if (retryAfter != null) header("Retry-After", retryAfter) }
+            .build()
+
+    @Test
+    fun testSuccessAndClientErrorsAreNotRetried() {
+        assertNull(retryPolicy.getRetryDelay(getRequest, response(getRequest, 200), null, 1, 0))
+        assertNull(retryPolicy.getRetryDelay(getRequest, response(getRequest, 404), null, 1, 0))
+        assertNull(retryPolicy.getRetryDelay(getRequest, response(getRequest, 400), null, 1, 0))
+    }
+
+    @Test
+    fun testTransientFailuresAreRetriedWithBackoff() {
+        val first = retryPolicy.getRetryDelay(getRequest, response(getRequest, 503), null, 1, 0)!!
+        val second = retryPolicy.getRetryDelay(getRequest, null, IOException(), 2, 0)!!
+
+        assertTrue(first in 125L..250L)
+        assertTrue(second in 250L..500L)
+        assertNull(retryPolicy.getRetryDelay(getRequest, response(getRequest, 503), null, 4, 0))
+    }
+
+    @Test
+    fun testTooManyRequestsIsRetriedOnlyWithRetryAfter() {
+        assertEquals(2000L, retryPolicy.getRetryDelay(getRequest, response(getRequest, 429, "2"), null, 1, 0))
+        assertNull(retryPolicy.getRetryDelay(getRequest, response(getRequest, 429), null, 1, 0))
+        assertNull(retryPolicy.getRetryDelay(getRequest, response(getRequest, 429, "soon"), null, 1, 0))
+    }
+
+    @Test
+    fun testRetryAfterDateIsParsedAndCapped() {
+        val now = 1_600_000_000_000L
+        val datePolicy = ExponentialBackoffRetryPolicy(getTime = { now })
+        val inThreeSeconds = Date(now + 3000).toHttpDateString()
+        val inOneMinute = Date(now + 60_000).toHttpDateString()
+        val inThePast = Date(now - 60_000).toHttpDateString()
+
+        assertEquals(3000L, datePolicy.getRetryDelay(getRequest, response(getRequest, 429, inThreeSeconds), null, 1, 0))
+        assertEquals(
+            ExponentialBackoffRetryPolicy.DEFAULT_MAX_DELAY_MILLIS,
+            datePolicy.getRetryDelay(getRequest, response(getRequest, 429, inOneMinute), null, 1, 0)
+        )
+        assertEquals(0L, datePolicy.getRetryDelay(getRequest, response(getRequest, 429, inThePast), null, 1, 0))
+        assertEquals(
+            ExponentialBackoffRetryPolicy.DEFAULT_MAX_DELAY_MILLIS,
+            datePolicy.getRetryDelay(getRequest, response(getRequest, 429, "60"), null, 1, 0)
+        )
+    }
+
+    @Test
+    fun testPostIsNotRetried() {
+        assertNull(retryPolicy.getRetryDelay(postRequest, response(postRequest, 503), null, 1, 0))
+        assertNull(retryPolicy.getRetryDelay(postRequest, null, IOException(), 1, 0))
+    }
+
+    @Test
+    fun testDeadlineAndBudgetStopRetries() {
+        val deadlinePolicy = ExponentialBackoffRetryPolicy(callDeadlineMillis = 1000L)
+        assertNull(deadlinePolicy.getRetryDelay(getRequest, response(getRequest, 429, "2"), null, 1, 0))
+
+        val budgetPolicy = ExponentialBackoffRetryPolicy(budget = RetryBudget(maxTokens = 1.0, tokensPerCall = 0.0))
+        assertTrue(budgetPolicy.getRetryDelay(getRequest, response(getRequest, 500), null, 1, 0) != null)
+        assertNull(budgetPolicy.getRetryDelay(getRequest, response(getRequest, 500), null, 1, 0))
+    }
+}
@@ -0,0 +1,56 @@
+package com.onelogin.mfa.data.network
+
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertTrue
+import junit.framework.Assert.fail
+import okhttp3.Call
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
+
+class RetryInterceptorTest {
+
+    private val request = Request.Builder().url("https://api.onelogin.com/settings").build()
+    private val call = mockk<Call>()
+    private val chain = mockk<Interceptor.Chain>()
+
+    @Test
+    fun testCanceledCallIsNotRetried() {
+        val canceled = AtomicBoolean(false)
+        every { call.isCanceled() } answers { canceled.get() }
+        every { chain.request() } returns request
+        every { chain.call() } returns call
+        every { chain.proceed(request) } answers {
+            // Canceled by the caller while the interceptor waits to retry
+            Thread { Thread.sleep(100); canceled.set(true) }.start()
+            throw IOException("Connection reset")
+        }
+        val retryPolicy = object : RetryPolicy {
+            override fun getRetryDelay(
+                request: Request,
+                response: Response?,
+                error: IOException?,
+                attempt: Int,
+                elapsedMillis: Long
+            ): Long? = 10_000L
+        }
+
+        val start = System.currentTimeMillis()
+        try {
+            RetryInterceptor(retryPolicy, MetricsRecorder()).intercept(chain)
+            fail("A canceled call must fail")
+        } catch (e: IOException) {
+            assertEquals("Canceled", e.message)
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 5000)
+        verify(exactly = 1) { chain.proceed(request) }
+    }
+}
@@ -0,0 +1,38 @@
+package com.onelogin.mfa.data.otp
+
+import com.onelogin.mfa.model.Factor
+import org.junit.Assert
+import org.junit.Test
+
+class OtpBatchTest {
+
+    @Test
+    fun testGenerate() {
+        val first = Factor().apply { seed = "testSeed" }
+        val second = Factor().apply { seed = "testSeed"; period = 60 }
+
+        // 1365000 is 45 times the default period (30 seconds) plus 15 seconds
+        val snapshots = OtpBatch.generate(listOf(first, second), 1365000)
+
+        Assert.assertEquals(2, snapshots.size)
+        Assert.assertSame(first, snapshots[0].factor)
+        Assert.assertEquals(TotpToken("testSeed", getTime = { 1365000 }).generateOtp(), snapshots[0].otp)
+        Assert.assertEquals(15000L, snapshots[0].remainingMillis)
+        Assert.assertEquals(30000L, snapshots[0].periodInMillis)
+        Assert.assertSame(second, snapshots[1].factor)
+        Assert.assertEquals(15000L, snapshots[1].remainingMillis)
+        Assert.assertEquals(60000L, snapshots[1].periodInMillis)
+    }
+
+    @Test
+    fun testGenerateEmptySeed() {
+        val snapshots = OtpBatch.generate(listOf(Factor()), 0)
+
+        Assert.assertEquals("", snapshots[0].otp)
+    }
+
+    @Test
+    fun testGenerateEmptyList() {
+        Assert.assertEquals(emptyList<Any>(), OtpBatch.generate(emptyList(), 0))
+    }
+}
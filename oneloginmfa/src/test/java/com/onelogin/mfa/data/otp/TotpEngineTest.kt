@@ -0,0 +1,65 @@
+package com.onelogin.mfa.data.otp
+
+import org.junit.Assert
+import org.junit.Test
+
+class TotpEngineTest {
+
+    @Test
+    fun testGenerateOTP() {
+        val otp = TotpEngine("testSeed").generateOtp(0)
+        // 298837 is the expected OTP for the given seed (testSeed) in the period 0
+        Assert.assertEquals("298837", otp)
+    }
+
+    @Test
+    fun testGenerateOTPEmptySeed() {
+        val engine = TotpEngine("")
+        Assert.assertEquals(false, engine.isValid)
+        Assert.assertEquals("", engine.generateOtp(0))
+    }
+
+    @Test
+    fun testGenerateOTPSameTimeStepIsCached() {
+        val engine = TotpEngine("testSeed")
+        val first = engine.generateOtp(1000)
+        val second = engine.generateOtp(29999)
+        Assert.assertSame(first, second)
+    }
+
+    @Test
+    fun testGenerateOTPNextTimeStepMatchesToken() {
+        val engine = TotpEngine("testSeed")
+        engine.generateOtp(0)
+        val otp = engine.generateOtp(30000)
+        Assert.assertEquals(TotpToken("testSeed", getTime = { 30000 }).generateOtp(), otp)
+    }
+
+    @Test
+    fun testGenerateOTPIntoBuffer() {
+        val buffer = CharArray(8) { '-' }
+        val length = TotpEngine("testSeed").generateOtp(0, buffer, 1)
+        Assert.assertEquals(6, length)
+        Assert.assertEquals("-298837-", String(buffer))
+    }
+
+    @Test
+    fun testGenerateOTPIntoBufferMatchesString() {
+        val engine = TotpEngine("testSeed", digits = 8)
+        val buffer = CharArray(8)
+        engine.generateOtp(1935000, buffer)
+        Assert.assertEquals(engine.generateOtp(1935000), String(buffer))
+    }
+
+    @Test
+    fun testGenerateOTPIntoBufferEmptySeed() {
+        val length = TotpEngine("").generateOtp(0, CharArray(6))
+        Assert.assertEquals(0, length)
+    }
+
+    @Test
+    fun testGetTimeStep() {
+        // 1365000 is 45 times the default period (30 seconds) plus 15 seconds
+        Assert.assertEquals(45L, TotpEngine("testSeed").getTimeStep(1365000))
+    }
+}
@@ -1,5 +1,7 @@
 package com.onelogin.mfa.data.otp
 
+import com.onelogin.mfa.data.metrics.MetricsRecorder
+import com.onelogin.mfa.model.MfaOperation
 import org.junit.Assert
 import org.junit.Test
 
@@ -45,4 +47,30 @@ class TotpTokenTest {
         val timer = TotpToken("testSeed", getTime = { 1350000 }).getTimerInMillis()
         Assert.assertEquals(30000, timer)
     }
+
+    @Test
+    fun testGetTimerInMillisWithT0() {
+        // 1360000 is 45 times the default period (30 seconds) after a t0 of 10 seconds
+        val timer = TotpToken("testSeed", t0 = 10, getTime = { 1360000 }).getTimerInMillis()
+        Assert.assertEquals(30000, timer)
+    }
+
+    @Test
+    fun testGetTimerInMillisForTimestamp() {
+        val timer = TotpToken("testSeed", getTime = { 0 }).getTimerInMillis(1365250)
+        Assert.assertEquals(14750, timer)
+    }
+
+    @Test
+    fun testGenerateOTPIsMeasured() {
+        val metrics = MetricsRecorder().apply { configure(true, null) }
+        val totpToken = TotpToken("testSeed", getTime = { 0 }).also { it.metrics = metrics }
+
+        totpToken.generateOtp()
+        TotpToken("", getTime = { 0 }).also { it.metrics = metrics }.generateOtp(CharArray(6))
+
+        val stats = metrics.getStats().first { it.operation == MfaOperation.GENERATE_OTP }
+        Assert.assertEquals(2L, stats.count)
+        Assert.assertEquals(1L, stats.failureCount)
+    }
 }
@@ -0,0 +1,121 @@
+package com.onelogin.mfa.data.repository
+
+import com.onelogin.mfa.model.Factor
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.mockk
+import junit.framework.Assert.assertEquals
+import junit.framework.Assert.assertNull
+import kotlinx.coroutines.runBlocking
+import org.junit.Before
+import org.junit.Test
+
+class CachedMfaRepositoryTest {
+
+    private val repository = mockk<MfaRepository>()
+    private lateinit var cachedRepository: CachedMfaRepository
+
+    private val oneLoginFactor = Factor().apply {
+        id = 1
+        credentialId = "someCredentialId"
+        issuer = "OneLogin"
+        seed = "someSeed"
+        orderPreference = 1
+    }
+
+    private val otherFactor = Factor().apply {
+        id = 2
+        credentialId = "otherCredentialId"
+        issuer = "SomeOtherCompany"
+        seed = "otherSeed"
+        orderPreference = 0
+    }
+
+    @Before
+    fun setup() {
+        coEvery { repository.getAllFactors() } returns listOf(otherFactor, oneLoginFactor)
+        cachedRepository = CachedMfaRepository(repository)
+    }
+
+    @Test
+    fun testReadsLoadRowsOnce() {
+        runBlocking {
+            assertEquals(oneLoginFactor, cachedRepository.getFactorById(1))
+            assertEquals(oneLoginFactor, cachedRepository.getFactorByCredentialId("someCredentialId"))
+            assertEquals(listOf(oneLoginFactor), cachedRepository.getFactorsByIssuer("onelogin"))
+            assertEquals(listOf(otherFactor, oneLoginFactor), cachedRepository.getAllFactors())
+            assertNull(cachedRepository.getFactorById(3))
+        }
+
+        coVerify(exactly = 1) { repository.getAllFactors() }
+        coVerify(exactly = 0) { repository.getFactorById(any()) }
+        coVerify(exactly = 0) { repository.getFactorByCredentialId(any()) }
+        coVerify(exactly = 0) { repository.getFactorsByIssuer(any()) }
+    }
+
+    @Test
+    fun testIssuerMatchingFollowsSqlite() {
+        val accentedFactor = Factor().apply { id = 3; issuer = "Société"; seed = "accentedSeed" }
+        val sharpSFactor = Factor().apply { id = 4; issuer = "Straße"; seed = "sharpSSeed" }
+        coEvery { repository.getAllFactors() } returns listOf(accentedFactor, sharpSFactor)
+        cachedRepository = CachedMfaRepository(repository)
+
+        runBlocking {
+            // UPPER() in SQLite only folds ASCII letters
+            assertEquals(listOf(accentedFactor), cachedRepository.getFactorsByIssuer("SOCIéTé"))
+            assertEquals(emptyList<Factor>(), cachedRepository.getFactorsByIssuer("SOCIÉTÉ"))
+            assertEquals(listOf(sharpSFactor), cachedRepository.getFactorsByIssuer("straße"))
+            assertEquals(emptyList<Factor>(), cachedRepository.getFactorsByIssuer("STRASSE"))
+        }
+    }
+
+    @Test
+    fun testReturnedFactorsDoNotShareCacheState() {
+        val result = runBlocking {
+            cachedRepository.getFactorById(1)!!.seed = "decryptedSeed"
+            cachedRepository.getFactorById(1)
+        }
+
+        assertEquals("someSeed", result?.seed)
+    }
+
+    @Test
+    fun testWritesGoThroughToRepository() {
+        val newFactor = Factor().apply {
+            credentialId = "newCredentialId"
+            issuer = "OneLogin"
+        }
+        coEvery { repository.addFactor(any()) } returns 3
+        coEvery { repository.updateFactor(any()) } returns 1
+        coEvery { repository.deleteFactorByCredentialId(any()) } returns 1
+
+        val result = runBlocking {
+            cachedRepository.addFactor(newFactor)
+            cachedRepository.updateFactor(oneLoginFactor.copy(issuer = "Renamed"))
+            cachedRepository.deleteFactorByCredentialId("otherCredentialId")
+            cachedRepository.getFactorsByIssuer("OneLogin")
+        }
+
+        coVerify(exactly = 1) { repository.addFactor(newFactor) }
+        coVerify(exactly = 1) { repository.updateFactor(oneLoginFactor.copy(issuer = "Renamed")) }
+        coVerify(exactly = 1) { repository.deleteFactorByCredentialId("otherCredentialId") }
+
+        assertEquals(listOf(3L), result.map { it.id })
+        runBlocking {
+            assertEquals("Renamed", cachedRepository.getFactorById(1)?.issuer)
+            assertNull(cachedRepository.getFactorByCredentialId("otherCredentialId"))
+        }
+    }
+
+    @Test
+    fun testFailedWriteLeavesCacheUntouched() {
+        coEvery { repository.deleteFactorById(any()) } returns 0
+
+        val result = runBlocking {
+            cachedRepository.deleteFactorById(1)
+            cachedRepository.getFactorById(1)
+        }
+
+        assertEquals(oneLoginFactor, result)
+    }
+}
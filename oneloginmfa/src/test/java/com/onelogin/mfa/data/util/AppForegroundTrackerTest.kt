@@ -0,0 +1,62 @@
+package com.onelogin.mfa.data.util
+
+import android.os.Looper
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleRegistry
+import androidx.lifecycle.ProcessLifecycleOwner
+import junit.framework.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class AppForegroundTrackerTest {
+
+    private val events = mutableListOf<String>()
+
+    private fun listener(name: String) = object : AppForegroundTracker.Listener {
+        override fun onForeground() {
+            events.add("$name foreground")
+        }
+
+        override fun onBackground() {
+            events.add("$name background")
+        }
+    }
+
+    @Test
+    fun testTransitionsReportedWheneverListenerIsAdded() {
+        val lifecycle = ProcessLifecycleOwner.get().lifecycle as LifecycleRegistry
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_START)
+
+        // Added after the app came to the foreground, e.g. by a background initialization
+        val first = listener("first")
+        AppForegroundTracker.addListener(first)
+        shadowOf(Looper.getMainLooper()).idle()
+
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP)
+
+        val second = listener("second")
+        AppForegroundTracker.addListener(second)
+        shadowOf(Looper.getMainLooper()).idle()
+
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_START)
+        AppForegroundTracker.removeListener(first)
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP)
+        AppForegroundTracker.removeListener(second)
+
+        assertEquals(
+            listOf(
+                "first foreground",
+                "first background",
+                "first foreground",
+                "second foreground",
+                "second background"
+            ),
+            events
+        )
+    }
+}
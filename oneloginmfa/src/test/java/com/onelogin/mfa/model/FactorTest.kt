@@ -0,0 +1,34 @@
+package com.onelogin.mfa.model
+
+import org.junit.Assert
+import org.junit.Test
+
+class FactorTest {
+
+    @Test
+    fun testTotpTokenIsReused() {
+        val factor = Factor().apply { seed = "testSeed" }
+
+        Assert.assertSame(factor.getTotpToken(), factor.getTotpToken())
+    }
+
+    @Test
+    fun testTotpTokenInvalidatedOnChange() {
+        val factor = Factor().apply { seed = "testSeed" }
+        val totpToken = factor.getTotpToken()
+
+        factor.period = 60
+
+        Assert.assertNotSame(totpToken, factor.getTotpToken())
+        Assert.assertEquals(60000L, factor.getPeriodInMillis())
+    }
+
+    @Test
+    fun testCopyDoesNotShareTotpToken() {
+        val factor = Factor().apply { seed = "testSeed" }
+        val totpToken = factor.getTotpToken()
+
+        Assert.assertNotSame(totpToken, factor.copy().getTotpToken())
+        Assert.assertEquals(factor, factor.copy())
+    }
+}
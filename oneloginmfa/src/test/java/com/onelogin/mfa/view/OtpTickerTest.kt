@@ -0,0 +1,94 @@
+package com.onelogin.mfa.view
+
+import android.os.Looper
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class OtpTickerTest {
+
+    private var time = 1_500L
+
+    private val firstTicks = mutableListOf<Long>()
+    private val secondTicks = mutableListOf<Long>()
+    private val firstListener = listener(firstTicks)
+    private val secondListener = listener(secondTicks)
+
+    @Before
+    fun setup() {
+        OtpTicker.getTime = { time }
+    }
+
+    @After
+    fun tearDown() {
+        OtpTicker.unsubscribe(firstListener)
+        OtpTicker.unsubscribe(secondListener)
+    }
+
+    @Test
+    fun testSubscribeNotifiesNowAndOnEachInterval() {
+        OtpTicker.subscribe(firstListener, 1_000)
+
+        advanceTo(2_000)
+        advanceTo(3_000)
+
+        assertEquals(listOf(1_500L, 2_000L, 3_000L), firstTicks)
+    }
+
+    @Test
+    fun testUnsubscribeStopsTicker() {
+        OtpTicker.subscribe(firstListener, 1_000)
+        OtpTicker.unsubscribe(firstListener)
+
+        assertEquals(Duration.ZERO, shadowOf(Looper.getMainLooper()).nextScheduledTaskTime)
+
+        advanceTo(2_000)
+
+        assertEquals(listOf(1_500L), firstTicks)
+    }
+
+    @Test
+    fun testTickerKeepsRunningForRemainingListeners() {
+        OtpTicker.subscribe(firstListener, 1_000)
+        OtpTicker.subscribe(secondListener, 1_000)
+        OtpTicker.unsubscribe(firstListener)
+
+        advanceTo(2_000)
+
+        assertEquals(listOf(1_500L), firstTicks)
+        assertEquals(listOf(1_500L, 2_000L), secondTicks)
+    }
+
+    @Test
+    fun testOneTickReachesAllListeners() {
+        OtpTicker.subscribe(firstListener, 1_000)
+        OtpTicker.subscribe(secondListener, 1_000)
+
+        advanceTo(2_000)
+
+        assertEquals(2_000L, firstTicks.last())
+        assertEquals(2_000L, secondTicks.last())
+        assertEquals(2, firstTicks.size)
+        assertEquals(2, secondTicks.size)
+    }
+
+    private fun advanceTo(newTime: Long) {
+        val elapsed = newTime - time
+        time = newTime
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(elapsed))
+    }
+
+    private fun listener(ticks: MutableList<Long>) = object : OtpTicker.Listener {
+        override fun onTick(now: Long) {
+            ticks.add(now)
+        }
+    }
+}